@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "2.1.0"
     id("org.jetbrains.intellij.platform") version "2.5.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.futao"
@@ -25,6 +26,30 @@ dependencies {
         // Add necessary plugin dependencies for compilation here, example:
         // bundledPlugin("com.intellij.java")
     }
+
+    // 单元测试（src/test/java）：./gradlew test，IntelliJ 平台的测试框架需要显式提供 JUnit 4
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("org.opentest4j:opentest4j:1.3.0")
+}
+
+// JMH基准测试（src/jmh/java）：./gradlew jmh，依赖下载过一次之后可以加 --offline 离线运行
+// 基准测试只使用无界面的 DocumentImpl 和插件自己的类，与单元测试共用 IntelliJ 平台的类路径
+sourceSets {
+    named("jmh") {
+        compileClasspath += sourceSets["test"].compileClasspath
+        runtimeClasspath += sourceSets["test"].runtimeClasspath
+    }
+}
+
+jmh {
+    jmhVersion = "1.37"
+    // gc 分析器的 gc.alloc.rate.norm 就是每个字符的分配字节数（基准方法按字符数声明了 OperationsPerInvocation）
+    profilers = listOf("gc")
+    jvmArgs = listOf("-Djava.awt.headless=true")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "CSV"
 }
 
 intellijPlatform {
@@ -0,0 +1,95 @@
+package com.futao.faketyping;
+
+import com.intellij.ide.highlighter.custom.CustomFileTypeLexer;
+import com.intellij.ide.highlighter.custom.SyntaxTable;
+import com.intellij.lexer.Lexer;
+
+/**
+ * 基准测试使用的示例内容，全部在内存中生成，不依赖任何文件
+ */
+final class BenchmarkTexts {
+    private static final String SNIPPET = ""
+            + "package com.example.demo;\n"
+            + "\n"
+            + "import java.util.ArrayList;\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "/**\n"
+            + " * 示例类，包含中文注释、缩进和常见的标点\n"
+            + " */\n"
+            + "public class OrderService {\n"
+            + "    private final List<String> orders = new ArrayList<>();\n"
+            + "\n"
+            + "    public int submit(String order) {\n"
+            + "        if (order == null || order.isEmpty()) {\n"
+            + "            throw new IllegalArgumentException(\"order must not be empty\");\n"
+            + "        }\n"
+            + "        orders.add(order.trim());\n"
+            + "        return orders.size();\n"
+            + "    }\n"
+            + "}\n"
+            + "\n";
+
+    private BenchmarkTexts() {
+    }
+
+    /**
+     * 生成至少指定长度的Java代码，截断在行尾
+     * @param length 最少字符数
+     */
+    static String javaSource(int length) {
+        StringBuilder builder = new StringBuilder(length + SNIPPET.length());
+        while (builder.length() < length) {
+            builder.append(SNIPPET);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 把 javaSource 的每一行稍作修改，用于比较只输入差异时的开销
+     * @param source 原始内容
+     * @param everyNthLine 每隔多少行修改一行
+     */
+    static String edited(String source, int everyNthLine) {
+        StringBuilder builder = new StringBuilder(source.length() + source.length() / everyNthLine);
+        int line = 0;
+        int start = 0;
+        while (start < source.length()) {
+            int end = source.indexOf('\n', start);
+            end = end < 0 ? source.length() : end + 1;
+            builder.append(source, start, end);
+            if (++line % everyNthLine == 0) {
+                builder.append("        // changed ").append(line).append('\n');
+            }
+            start = end;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 基准测试用的词法分析器：平台自带的自定义文件类型词法分析器，识别示例内容中的注释、字符串、数字和关键字，
+     * 不依赖Java插件
+     */
+    static Lexer javaLexer() {
+        SyntaxTable table = new SyntaxTable();
+        table.setLineComment("//");
+        table.setStartComment("/*");
+        table.setEndComment("*/");
+        for (String keyword : new String[]{"package", "import", "public", "private", "final", "class",
+                "new", "return", "if", "throw", "int"}) {
+            table.addKeyword1(keyword);
+        }
+        return new CustomFileTypeLexer(table);
+    }
+
+    /**
+     * 基准测试用的配置，使用默认设置和固定种子
+     */
+    static TypingConfig config(FakeTypingSettings.TimingModelType timingModel) {
+        FakeTypingSettings settings = new FakeTypingSettings();
+        settings.timingModel = timingModel;
+        settings.fixedSeed = true;
+        settings.seed = 42;
+        return TypingConfig.fromSettings(settings, settings.typingSpeed);
+    }
+}
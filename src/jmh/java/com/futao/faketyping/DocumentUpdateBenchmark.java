@@ -0,0 +1,74 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档更新策略的基准测试：每个字符一次插入，与按帧合并后一次插入一批
+ * 使用无界面的 {@link DocumentImpl}，不需要启动 IDE；结果按字符计算，
+ * gc 分析器的 gc.alloc.rate.norm 即每个字符的分配字节数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DocumentUpdateBenchmark {
+    // 每次调用输入的字符数，与 OperationsPerInvocation 保持一致
+    private static final int CHARS = 8192;
+
+    // 每批插入的字符数：1 相当于逐字符写入，16 约为 1毫秒/字符 时一帧的字符数
+    @Param({"1", "16", "256"})
+    public int batchSize;
+
+    private String text;
+    private EditScript insertion;
+    private Document document;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        text = BenchmarkTexts.javaSource(CHARS).substring(0, CHARS);
+        insertion = EditScript.insertion(0, text);
+    }
+
+    @Setup(Level.Invocation)
+    public void newDocument() {
+        // 第二个参数表示允许在非EDT线程使用，基准线程不需要写锁
+        document = new DocumentImpl("", true);
+    }
+
+    /**
+     * 直接插入字符串：每批一次 insertString
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public Document insertString() {
+        for (int i = 0; i < CHARS; i += batchSize) {
+            int end = Math.min(CHARS, i + batchSize);
+            document.insertString(i, text.subSequence(i, end));
+        }
+        return document;
+    }
+
+    /**
+     * 通过编辑脚本插入（打字引擎实际使用的路径）：每批一次 apply
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public Document editScript() {
+        for (int i = 0; i < CHARS; i += batchSize) {
+            insertion.apply(document, i, Math.min(CHARS, i + batchSize));
+        }
+        return document;
+    }
+}
@@ -0,0 +1,90 @@
+package com.futao.faketyping;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大文件末尾打字的吞吐量（字符/秒）：每批写入后只分析光标附近的窗口，与每批写入后重新分析整个文档的比较
+ * 文档大小分别为 10KB、1MB 和 10MB，窗口着色的结果应基本不随文档大小变化。
+ * 这是 {@link LargeFileHighlighter} 刷新路径的近似：只测量文档写入、窗口范围计算和词法分析，词法单元交给空的接收者。
+ * 添加和释放编辑器标记（RangeHighlighter）、查找着色属性以及编辑器的重绘都不在测量范围内，
+ * 这些开销需要编辑器和标记模型，无法在不启动 IDE 的基准中构造；它们与窗口内的词法单元数成正比，
+ * 而释放保留范围之前的标记使标记总数也只与窗口大小有关，因此本基准反映的是随文档大小变化的趋势，不是绝对的每字符开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LargeFileBenchmark {
+    // 每次调用输入的字符数，与 OperationsPerInvocation 保持一致
+    private static final int CHARS = 256;
+    // 每批插入的字符数，约为 1毫秒/字符 时一帧的字符数
+    private static final int BATCH = 16;
+    // 着色窗口在光标前后各包含的行数，与默认设置相同
+    private static final int WINDOW_LINES = 100;
+    private static final LargeFileHighlighter.TokenSink SINK = (type, start, end) -> {
+    };
+
+    // 打字开始前文档的大小（字符）
+    @Param({"10240", "1048576", "10485760"})
+    public int documentSize;
+
+    // window：只分析光标附近的窗口；full：每批写入后分析整个文档
+    @Param({"window", "full"})
+    public String highlighting;
+
+    private String text;
+    private Document document;
+    private int initialLength;
+    private Lexer lexer;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        text = BenchmarkTexts.javaSource(CHARS).substring(0, CHARS);
+        // 第二个参数表示允许在非EDT线程使用，基准线程不需要写锁
+        document = new DocumentImpl(BenchmarkTexts.javaSource(documentSize), true);
+        initialLength = document.getTextLength();
+        lexer = BenchmarkTexts.javaLexer();
+    }
+
+    @TearDown(Level.Invocation)
+    public void truncate() {
+        // 删除本次输入的内容，使每次调用都从相同的文档大小开始
+        document.deleteString(initialLength, document.getTextLength());
+    }
+
+    /**
+     * 在文档末尾按批输入，每批之后做一次词法分析
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public int typeAtEnd() {
+        boolean window = "window".equals(highlighting);
+        int tokens = 0;
+        for (int i = 0; i < CHARS; i += BATCH) {
+            int offset = document.getTextLength();
+            document.insertString(offset, text.subSequence(i, i + BATCH));
+            int caret = offset + BATCH;
+            CharSequence chars = document.getImmutableCharSequence();
+            tokens += window
+                    ? LargeFileHighlighter.lex(lexer, chars,
+                            LargeFileHighlighter.windowStart(document, caret, WINDOW_LINES),
+                            LargeFileHighlighter.windowEnd(document, caret, WINDOW_LINES), SINK)
+                    : LargeFileHighlighter.lex(lexer, chars, 0, chars.length(), SINK);
+        }
+        return tokens;
+    }
+}
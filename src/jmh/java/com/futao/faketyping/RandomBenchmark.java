@@ -0,0 +1,69 @@
+package com.futao.faketyping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 随机数生成器的吞吐量：会话使用的 SplittableRandom 与其他常见选择的比较
+ * 共享的 Random 用4个线程测试，模拟多个会话竞争同一个生成器的情况
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RandomBenchmark {
+    // 模拟随机速度变化时的取值范围
+    private static final int BOUND = 61;
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        SplittableRandom splittable;
+        Random random;
+
+        @Setup
+        public void prepare() {
+            splittable = new SplittableRandom(42);
+            random = new Random(42);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final Random random = new Random(42);
+    }
+
+    @Benchmark
+    public int splittableRandom(PerThread state) {
+        return state.splittable.nextInt(BOUND);
+    }
+
+    @Benchmark
+    public int threadLocalRandom() {
+        return ThreadLocalRandom.current().nextInt(BOUND);
+    }
+
+    @Benchmark
+    public int random(PerThread state) {
+        return state.random.nextInt(BOUND);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int sharedRandom(Shared state) {
+        return state.random.nextInt(BOUND);
+    }
+
+    @Benchmark
+    public double mathRandom() {
+        return Math.random();
+    }
+}
@@ -0,0 +1,75 @@
+package com.futao.faketyping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节奏模型和时间线的基准测试，结果按字符计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimingModelBenchmark {
+    private static final int CHARS = 64 * 1024;
+
+    @Param({"UNIFORM", "HUMAN"})
+    public FakeTypingSettings.TimingModelType timingModel;
+
+    private String text;
+    private String edited;
+    private TypingConfig config;
+    private TimingModel model;
+
+    @Setup
+    public void prepare() {
+        text = BenchmarkTexts.javaSource(CHARS).substring(0, CHARS);
+        edited = BenchmarkTexts.edited(text, 10);
+        config = BenchmarkTexts.config(timingModel);
+        model = TimingModel.create(config, new SplittableRandom(config.getSeed()));
+    }
+
+    /**
+     * 逐字符计算延迟
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public long unitDelay() {
+        long total = 0;
+        for (int i = 0; i < CHARS; i++) {
+            total += model.unitDelay(text, i, i + 1, 1);
+        }
+        return total;
+    }
+
+    /**
+     * 完整重新输入时计算整个时间线（包括划分输出单元）
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public TypingTimeline fullTimeline() {
+        EditScript script = EditScript.compute("", text);
+        return TypingTimeline.build(script, new EmissionPlanner(text, config.getGranularity()),
+                TimingModel.create(config, new SplittableRandom(config.getSeed())), config.getGranularity());
+    }
+
+    /**
+     * 只输入差异时比较内容并计算时间线
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARS)
+    public TypingTimeline diffTimeline() {
+        EditScript script = EditScript.compute(text, edited);
+        return TypingTimeline.build(script, new EmissionPlanner(edited, config.getGranularity()),
+                TimingModel.create(config, new SplittableRandom(config.getSeed())), config.getGranularity());
+    }
+}
@@ -0,0 +1,79 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+/**
+ * 只输入差异模式的对话框：选择与当前内容比较的文本来源和打字方向
+ */
+public class DiffTargetDialog extends DialogWrapper {
+    private final ComboBox<TargetSource> sourceComboBox = new ComboBox<>(TargetSource.values());
+    // 默认从当前内容打字变成所选内容；反向常用于演示"从基线版本修改成当前代码"
+    private final JBCheckBox reverseCheckBox = new JBCheckBox("从所选内容开始，打字变成当前内容");
+
+    /**
+     * 比较文本的来源
+     */
+    public enum TargetSource {
+        // 剪贴板中的文本
+        CLIPBOARD("剪贴板"),
+        // 另一个文件
+        FILE("其他文件"),
+        // 版本控制中修改之前的版本
+        VCS("版本控制中的基线版本"),
+        // 磁盘上最后保存的版本
+        SAVED("磁盘上保存的版本");
+
+        private final String displayName;
+
+        TargetSource(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 构造函数
+     * @param project 当前项目
+     */
+    public DiffTargetDialog(@Nullable Project project) {
+        super(project);
+        setTitle("FakeTyping只输入差异");
+        init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent(new JBLabel("比较内容来源:"), sourceComboBox, 1, false)
+                .addComponent(reverseCheckBox, 1)
+                .addComponent(new JBLabel("只删除和输入两者不同的部分，相同的内容保持不动"), 1)
+                .getPanel();
+    }
+
+    /**
+     * 选择的文本来源
+     */
+    public TargetSource getTargetSource() {
+        return (TargetSource) sourceComboBox.getSelectedItem();
+    }
+
+    /**
+     * 是否反向：从所选内容开始，打字变成当前内容
+     */
+    public boolean isReverse() {
+        return reverseCheckBox.isSelected();
+    }
+}
@@ -0,0 +1,274 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.editor.Document;
+
+import java.util.Arrays;
+
+/**
+ * 把文档从起始内容变成目标内容的编辑脚本
+ * 脚本由若干差异块组成，每块先从后往前删除原有内容，再输入新内容。所有块按顺序排成一条"按键序列"，
+ * 序列中的位置（按键位置）唯一确定文档的状态：之前的块全部完成，之后的块保持原样，当前块完成了一部分。
+ * 完整重新输入、在光标处输入一段内容、删除一段内容都是只有一个块的特例。
+ * 块信息保存在基本类型数组中，在两个位置之间前进或后退只需修改涉及的块。
+ */
+public final class EditScript {
+    private final CharSequence source;
+    private final CharSequence target;
+    // 脚本在文档中的起始位置，目标内容中的位置加上它就是文档中的位置
+    private final int anchor;
+    private final int hunkCount;
+    // 第h块在原始内容中的开始位置
+    private final int[] sourceStarts;
+    // 第h块需要删除的字符数
+    private final int[] deleteLengths;
+    // 第h块在目标内容中的开始位置，也是之前的块全部完成后该块在文档中的位置
+    private final int[] targetStarts;
+    // 第h块需要输入的字符数
+    private final int[] insertLengths;
+    // 第h块在按键序列中的开始位置
+    private final int[] streamStarts;
+    private final int streamLength;
+
+    private EditScript(CharSequence source, CharSequence target, int anchor, int hunkCount, int[] sourceStarts,
+                       int[] deleteLengths, int[] targetStarts, int[] insertLengths) {
+        this.source = source;
+        this.target = target;
+        this.anchor = anchor;
+        this.hunkCount = hunkCount;
+        this.sourceStarts = sourceStarts;
+        this.deleteLengths = deleteLengths;
+        this.targetStarts = targetStarts;
+        this.insertLengths = insertLengths;
+        this.streamStarts = new int[hunkCount];
+        int position = 0;
+        for (int h = 0; h < hunkCount; h++) {
+            streamStarts[h] = position;
+            position += deleteLengths[h] + insertLengths[h];
+        }
+        this.streamLength = position;
+    }
+
+    /**
+     * 计算把起始内容变成目标内容的编辑脚本
+     * 起始内容或目标内容为空时直接生成一个块，不做比较
+     * @param source 起始内容（不可变快照）
+     * @param target 目标内容（不可变快照）
+     * @return 编辑脚本
+     */
+    public static EditScript compute(CharSequence source, CharSequence target) {
+        if (source.length() == 0 || target.length() == 0) {
+            return replacement(0, source, target);
+        }
+        int[][] hunks = new int[4][16];
+        int[] count = {0};
+        LineDiff.compare(source, target, (sourceStart, sourceEnd, targetStart, targetEnd) -> {
+            if (count[0] == hunks[0].length) {
+                for (int i = 0; i < hunks.length; i++) {
+                    hunks[i] = Arrays.copyOf(hunks[i], count[0] + (count[0] >> 1) + 1);
+                }
+            }
+            hunks[0][count[0]] = sourceStart;
+            hunks[1][count[0]] = sourceEnd - sourceStart;
+            hunks[2][count[0]] = targetStart;
+            hunks[3][count[0]] = targetEnd - targetStart;
+            count[0]++;
+        });
+        return new EditScript(source, target, 0, count[0], hunks[0], hunks[1], hunks[2], hunks[3]);
+    }
+
+    /**
+     * 在文档的指定位置输入一段内容
+     * @param offset 文档中的位置
+     * @param text 需要输入的内容
+     * @return 编辑脚本
+     */
+    public static EditScript insertion(int offset, CharSequence text) {
+        return replacement(offset, "", text);
+    }
+
+    /**
+     * 删除文档中从指定位置开始的一段内容
+     * @param offset 文档中的位置
+     * @param text 需要删除的内容（必须与文档中的内容一致）
+     * @return 编辑脚本
+     */
+    public static EditScript deletion(int offset, CharSequence text) {
+        return replacement(offset, text, "");
+    }
+
+    private static EditScript replacement(int offset, CharSequence source, CharSequence target) {
+        int count = source.length() + target.length() > 0 ? 1 : 0;
+        return new EditScript(source, target, offset, count, new int[]{0}, new int[]{source.length()},
+                new int[]{0}, new int[]{target.length()});
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public CharSequence getTarget() {
+        return target;
+    }
+
+    /**
+     * 脚本在文档中的起始位置，目标内容中的位置加上它就是完成后文档中的位置
+     */
+    public int getAnchor() {
+        return anchor;
+    }
+
+    public int getHunkCount() {
+        return hunkCount;
+    }
+
+    /**
+     * 按键序列的总长度，即需要删除和输入的字符总数
+     */
+    public int getStreamLength() {
+        return streamLength;
+    }
+
+    public int sourceStart(int hunk) {
+        return sourceStarts[hunk];
+    }
+
+    public int deleteLength(int hunk) {
+        return deleteLengths[hunk];
+    }
+
+    public int targetStart(int hunk) {
+        return targetStarts[hunk];
+    }
+
+    public int insertLength(int hunk) {
+        return insertLengths[hunk];
+    }
+
+    public int streamStart(int hunk) {
+        return streamStarts[hunk];
+    }
+
+    /**
+     * 把文档从一个按键位置改到另一个按键位置，可以前进也可以后退，必须在写命令中调用
+     * @param document 文档，内容必须处于 from 对应的状态
+     * @param from 当前按键位置
+     * @param to 目标按键位置
+     * @return 最后一次写入或删除的内容
+     */
+    public CharSequence apply(Document document, int from, int to) {
+        CharSequence changed = "";
+        if (to > from) {
+            for (int h = hunkAt(from); h >= 0 && h < hunkCount && streamStarts[h] < to; h++) {
+                changed = applyHunk(document, h, from - streamStarts[h], to - streamStarts[h]);
+            }
+        } else if (to < from) {
+            // 后退时从后往前撤销，保证处理每一块时之前的块都已完成
+            for (int h = hunkAt(from); h >= 0 && streamStarts[h] + hunkLength(h) > to; h--) {
+                changed = applyHunk(document, h, from - streamStarts[h], to - streamStarts[h]);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 按键位置对应的光标位置：当前块中剩余原有内容或已输入内容的末尾
+     * @param position 按键位置
+     */
+    public int documentOffset(int position) {
+        int h = hunkAt(position);
+        if (h < 0) {
+            return anchor;
+        }
+        int delete = deleteLengths[h];
+        int state = clamp(position - streamStarts[h], hunkLength(h));
+        return anchor + targetStarts[h] + delete - Math.min(state, delete) + Math.max(0, state - delete);
+    }
+
+    /**
+     * 使文档在目标内容的指定位置之前都与目标内容一致所需的按键位置
+     * @param targetOffset 目标内容中的位置
+     */
+    public int positionOf(int targetOffset) {
+        // 最后一个开始位置在 targetOffset 之前的块
+        int low = 0;
+        int high = hunkCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (targetStarts[mid] < targetOffset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int h = low - 1;
+        if (h < 0) {
+            return 0;
+        }
+        int inserted = Math.min(insertLengths[h], targetOffset - targetStarts[h]);
+        return streamStarts[h] + deleteLengths[h] + inserted;
+    }
+
+    /**
+     * 按键位置所在的块：开始位置不大于该位置的最后一块，没有块时返回-1
+     */
+    private int hunkAt(int position) {
+        int low = 0;
+        int high = hunkCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (streamStarts[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private int hunkLength(int hunk) {
+        return deleteLengths[hunk] + insertLengths[hunk];
+    }
+
+    /**
+     * 把一块从状态 from 改到状态 to（状态为该块已完成的按键数，先删除后输入）
+     * 块内文档内容为：原有内容中尚未删除的部分 + 目标内容中已经输入的部分，位于文档的 anchor + targetStart 处
+     */
+    private CharSequence applyHunk(Document document, int hunk, int from, int to) {
+        int length = hunkLength(hunk);
+        from = clamp(from, length);
+        to = clamp(to, length);
+        int delete = deleteLengths[hunk];
+        int base = targetStarts[hunk];
+        int at = anchor + base;
+        int sourceEnd = sourceStarts[hunk] + delete;
+        int deletedFrom = Math.min(from, delete);
+        int deletedTo = Math.min(to, delete);
+        int insertedFrom = Math.max(0, from - delete);
+        int insertedTo = Math.max(0, to - delete);
+        CharSequence changed = "";
+        if (to > from) {
+            if (deletedTo > deletedFrom) {
+                changed = source.subSequence(sourceEnd - deletedTo, sourceEnd - deletedFrom);
+                document.deleteString(at + delete - deletedTo, at + delete - deletedFrom);
+            }
+            if (insertedTo > insertedFrom) {
+                changed = target.subSequence(base + insertedFrom, base + insertedTo);
+                document.insertString(at + insertedFrom, changed);
+            }
+        } else if (to < from) {
+            if (insertedFrom > insertedTo) {
+                changed = target.subSequence(base + insertedTo, base + insertedFrom);
+                document.deleteString(at + insertedTo, at + insertedFrom);
+            }
+            if (deletedFrom > deletedTo) {
+                changed = source.subSequence(sourceEnd - deletedFrom, sourceEnd - deletedTo);
+                document.insertString(at + delete - deletedFrom, changed);
+            }
+        }
+        return changed;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+}
@@ -0,0 +1,219 @@
+package com.futao.faketyping;
+
+/**
+ * 输出单元划分
+ * 根据输出粒度把内容切分为一个个输出单元（字符、单词、整行），每个单元用一次文档修改输入，
+ * 并给出单元的权重：单元输入后等待"权重 × 单字符延迟"再输入下一个单元。
+ * 单元边界总是对齐到字素簇边界，逐字符模式下每个单元是一个完整的字素簇（如 emoji、带组合符号的字符）。
+ */
+public class EmissionPlanner {
+    // 自适应模式下视为样板代码、整行输入的行前缀
+    private static final String[] BOILERPLATE_PREFIXES = {
+            "import ", "package ", "#include", "#import", "using ", "from ", "require(", "@file:"
+    };
+
+    private final CharSequence text;
+    private final FakeTypingSettings.TypingGranularity granularity;
+    // 文件开头的许可证/版权注释的结束位置，自适应模式下整行输入
+    private final int headerEnd;
+    // 字素簇边界索引，每个会话只计算一次
+    private final GraphemeIndex graphemes;
+
+    /**
+     * 构造函数
+     * @param text 需要输入的内容
+     * @param granularity 输出粒度
+     */
+    public EmissionPlanner(CharSequence text, FakeTypingSettings.TypingGranularity granularity) {
+        this.text = text;
+        this.granularity = granularity;
+        this.headerEnd = granularity == FakeTypingSettings.TypingGranularity.ADAPTIVE ? findHeaderEnd(text) : 0;
+        this.graphemes = new GraphemeIndex(text);
+    }
+
+    /**
+     * 计算从指定位置开始的输出单元的结束位置
+     * @param start 单元开始位置
+     * @return 单元结束位置（不包含）
+     */
+    public int nextUnitEnd(int start) {
+        switch (granularity) {
+            case WORD:
+                return graphemes.ceilBoundary(wordEnd(start));
+            case LINE:
+                return graphemes.ceilBoundary(lineEnd(start));
+            case ADAPTIVE:
+                return graphemes.ceilBoundary(adaptiveEnd(start));
+            default:
+                return graphemes.nextBoundary(start);
+        }
+    }
+
+    /**
+     * 计算输出单元的权重
+     * @param start 单元开始位置
+     * @param end 单元结束位置（不包含）
+     * @return 权重，0表示下一个单元立即输入
+     */
+    public int unitWeight(int start, int end) {
+        switch (granularity) {
+            case WORD:
+            case LINE:
+                // 按单元长度计算，整体节奏与逐字符输入一致
+                return end - start;
+            case ADAPTIVE:
+                // 空白立即输入，样板代码整行只占一个字符的时间
+                return isWhitespace(start, end) ? 0 : 1;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 单词模式：连续的标识符字符或连续的符号，连同其后的空格和制表符；换行及其后的缩进单独作为一个单元
+     */
+    private int wordEnd(int start) {
+        int length = text.length();
+        char c = text.charAt(start);
+        int end = start + 1;
+        if (c == '\n') {
+            // 换行连同下一行的缩进一起输入
+            return skipIndent(end);
+        }
+        if (isWordChar(c)) {
+            while (end < length && isWordChar(text.charAt(end))) {
+                end++;
+            }
+        } else if (!Character.isWhitespace(c)) {
+            while (end < length && isSymbolChar(text.charAt(end))) {
+                end++;
+            }
+        }
+        return skipIndent(end);
+    }
+
+    /**
+     * 整行模式：到换行符为止（包含换行符）
+     */
+    private int lineEnd(int start) {
+        int length = text.length();
+        int end = start;
+        while (end < length && text.charAt(end) != '\n') {
+            end++;
+        }
+        return Math.min(length, end + 1);
+    }
+
+    /**
+     * 自适应模式：空白连续输入、样板代码整行输入、其余逐字符输入
+     */
+    private int adaptiveEnd(int start) {
+        int length = text.length();
+        char c = text.charAt(start);
+        if (Character.isWhitespace(c)) {
+            int end = start + 1;
+            while (end < length && Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+            return end;
+        }
+        if (isLineStart(start) && (start < headerEnd || isBoilerplateLine(start))) {
+            return lineEnd(start);
+        }
+        return graphemes.nextBoundary(start);
+    }
+
+    private int skipIndent(int end) {
+        int length = text.length();
+        while (end < length && (text.charAt(end) == ' ' || text.charAt(end) == '\t')) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * 判断位置之前只有本行的缩进
+     */
+    private boolean isLineStart(int offset) {
+        for (int i = offset - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return true;
+            }
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBoilerplateLine(int start) {
+        for (String prefix : BOILERPLATE_PREFIXES) {
+            if (regionMatches(start, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionMatches(int offset, String prefix) {
+        if (offset + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isWhitespace(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 查找文件开头注释块（许可证、版权声明）的结束位置
+     */
+    private static int findHeaderEnd(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < length && text.charAt(i) == '/' && text.charAt(i + 1) == '*') {
+            // 块注释：到 */ 为止
+            for (int j = i + 2; j + 1 < length; j++) {
+                if (text.charAt(j) == '*' && text.charAt(j + 1) == '/') {
+                    return j + 2;
+                }
+            }
+            return length;
+        }
+        // 连续的行注释
+        int end = 0;
+        while (i < length && (text.charAt(i) == '#' || (text.charAt(i) == '/' && i + 1 < length && text.charAt(i + 1) == '/'))) {
+            while (i < length && text.charAt(i) != '\n') {
+                i++;
+            }
+            end = i;
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isSymbolChar(char c) {
+        return !isWordChar(c) && !Character.isWhitespace(c);
+    }
+}
@@ -2,10 +2,12 @@ package com.futao.faketyping;
 
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBTextField;
 import com.intellij.util.ui.FormBuilder;
+import com.intellij.util.xmlb.XmlSerializerUtil;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
 
@@ -22,6 +24,23 @@ public class FakeTypingConfigurable implements Configurable {
     private JBTextField maxTypingSpeedField;
     private JBCheckBox randomSpeedVariationCheckBox;
     private JBTextField randomVariationPercentField;
+    private ComboBox<FakeTypingSettings.UndoMode> undoModeComboBox;
+    private JBTextField undoChunkSizeField;
+    private JBTextField scrollSafeZoneLinesField;
+    private JBCheckBox smoothScrollCheckBox;
+    private ComboBox<FakeTypingSettings.PerformanceProfile> performanceProfileComboBox;
+    private ComboBox<FakeTypingSettings.TypingGranularity> typingGranularityComboBox;
+    private ComboBox<FakeTypingSettings.HighlightThrottle> highlightThrottleComboBox;
+    private JBTextField highlightIntervalField;
+    private JBTextField seekMarkerField;
+    private ComboBox<FakeTypingSettings.TimingModelType> timingModelComboBox;
+    private JBCheckBox thinkPausesCheckBox;
+    private JBCheckBox fixedSeedCheckBox;
+    private JBCheckBox collectMetricsCheckBox;
+    private JBCheckBox previewModeCheckBox;
+    private JBTextField seedField;
+    private JBTextField largeFileThresholdField;
+    private JBTextField highlightWindowLinesField;
 
     @Nls(capitalization = Nls.Capitalization.Title)
     @Override
@@ -37,6 +56,36 @@ public class FakeTypingConfigurable implements Configurable {
         maxTypingSpeedField = new JBTextField();
         randomSpeedVariationCheckBox = new JBCheckBox("启用随机打字速度变化");
         randomVariationPercentField = new JBTextField();
+        undoModeComboBox = new ComboBox<>(FakeTypingSettings.UndoMode.values());
+        undoChunkSizeField = new JBTextField();
+        scrollSafeZoneLinesField = new JBTextField();
+        smoothScrollCheckBox = new JBCheckBox("平滑滚动（每次换行按整行滚动）");
+        performanceProfileComboBox = new ComboBox<>(FakeTypingSettings.PerformanceProfile.values());
+        typingGranularityComboBox = new ComboBox<>(FakeTypingSettings.TypingGranularity.values());
+        highlightThrottleComboBox = new ComboBox<>(FakeTypingSettings.HighlightThrottle.values());
+        highlightIntervalField = new JBTextField();
+        seekMarkerField = new JBTextField();
+        timingModelComboBox = new ComboBox<>(FakeTypingSettings.TimingModelType.values());
+        thinkPausesCheckBox = new JBCheckBox("输入代码块之前、空行之后停顿思考");
+        fixedSeedCheckBox = new JBCheckBox("使用固定的随机种子（每次打字节奏相同）");
+        seedField = new JBTextField();
+        collectMetricsCheckBox = new JBCheckBox("收集性能指标（在控制面板中显示，完成后可导出CSV）");
+        previewModeCheckBox = new JBCheckBox("预览模式（在内存中的副本里打字，不修改真实文件）");
+        largeFileThresholdField = new JBTextField();
+        highlightWindowLinesField = new JBTextField();
+        fixedSeedCheckBox.addItemListener(e -> seedField.setEnabled(fixedSeedCheckBox.isSelected()));
+        // 只有仿真人节奏才有思考停顿
+        timingModelComboBox.addItemListener(e -> thinkPausesCheckBox.setEnabled(
+                timingModelComboBox.getSelectedItem() == FakeTypingSettings.TimingModelType.HUMAN));
+        // 只有按间隔刷新时才需要设置间隔
+        highlightThrottleComboBox.addItemListener(e -> highlightIntervalField.setEnabled(
+                highlightThrottleComboBox.isEnabled() &&
+                highlightThrottleComboBox.getSelectedItem() == FakeTypingSettings.HighlightThrottle.INTERVAL));
+        // 选择预设时显示预设的输出粒度和代码分析方式，不能单独修改
+        performanceProfileComboBox.addItemListener(e -> updateProfileControls());
+        // 只有按块合并时才需要设置块大小
+        undoModeComboBox.addItemListener(e -> undoChunkSizeField.setEnabled(
+                undoModeComboBox.getSelectedItem() == FakeTypingSettings.UndoMode.CHUNK));
 
         // 创建设置面板
         myMainPanel = FormBuilder.createFormBuilder()
@@ -45,11 +94,28 @@ public class FakeTypingConfigurable implements Configurable {
                 .addLabeledComponent(new JBLabel("最大打字速度 (毫秒/字符):"), maxTypingSpeedField, 1, false)
                 .addComponent(randomSpeedVariationCheckBox, 1)
                 .addLabeledComponent(new JBLabel("随机速度变化范围 (%):"), randomVariationPercentField, 1, false)
+                .addLabeledComponent(new JBLabel("打字节奏:"), timingModelComboBox, 1, false)
+                .addComponent(thinkPausesCheckBox, 1)
+                .addComponent(fixedSeedCheckBox, 1)
+                .addLabeledComponent(new JBLabel("随机种子:"), seedField, 1, false)
+                .addLabeledComponent(new JBLabel("性能预设:"), performanceProfileComboBox, 1, false)
+                .addLabeledComponent(new JBLabel("输出粒度:"), typingGranularityComboBox, 1, false)
+                .addLabeledComponent(new JBLabel("撤销历史:"), undoModeComboBox, 1, false)
+                .addLabeledComponent(new JBLabel("撤销合并块大小 (字符):"), undoChunkSizeField, 1, false)
+                .addLabeledComponent(new JBLabel("滚动安全区 (行):"), scrollSafeZoneLinesField, 1, false)
+                .addComponent(smoothScrollCheckBox, 1)
+                .addLabeledComponent(new JBLabel("打字期间代码分析:"), highlightThrottleComboBox, 1, false)
+                .addLabeledComponent(new JBLabel("代码分析刷新间隔 (毫秒):"), highlightIntervalField, 1, false)
+                .addLabeledComponent(new JBLabel("跳转标记文本:"), seekMarkerField, 1, false)
+                .addLabeledComponent(new JBLabel("大文件阈值 (KB，0为不启用):"), largeFileThresholdField, 1, false)
+                .addLabeledComponent(new JBLabel("大文件着色窗口 (行):"), highlightWindowLinesField, 1, false)
+                .addComponent(previewModeCheckBox, 1)
+                .addComponent(collectMetricsCheckBox, 1)
                 .addComponentFillVertically(new JPanel(), 0)
                 .getPanel();
 
         // 设置面板大小
-        myMainPanel.setPreferredSize(new Dimension(400, 200));
+        myMainPanel.setPreferredSize(new Dimension(400, 690));
 
         // 加载当前设置
         reset();
@@ -66,12 +132,35 @@ public class FakeTypingConfigurable implements Configurable {
             int maxTypingSpeed = Integer.parseInt(maxTypingSpeedField.getText());
             boolean randomSpeedVariation = randomSpeedVariationCheckBox.isSelected();
             int randomVariationPercent = Integer.parseInt(randomVariationPercentField.getText());
+            int undoChunkSize = Integer.parseInt(undoChunkSizeField.getText());
+            int scrollSafeZoneLines = Integer.parseInt(scrollSafeZoneLinesField.getText());
+            int highlightIntervalMs = Integer.parseInt(highlightIntervalField.getText());
+            long seed = Long.parseLong(seedField.getText().trim());
+            int largeFileThresholdKb = Integer.parseInt(largeFileThresholdField.getText());
+            int highlightWindowLines = Integer.parseInt(highlightWindowLinesField.getText());
 
             return typingSpeed != settings.typingSpeed ||
                    minTypingSpeed != settings.minTypingSpeed ||
                    maxTypingSpeed != settings.maxTypingSpeed ||
                    randomSpeedVariation != settings.randomSpeedVariation ||
-                   randomVariationPercent != settings.randomVariationPercent;
+                   randomVariationPercent != settings.randomVariationPercent ||
+                   undoModeComboBox.getSelectedItem() != settings.undoMode ||
+                   undoChunkSize != settings.undoChunkSize ||
+                   scrollSafeZoneLines != settings.scrollSafeZoneLines ||
+                   smoothScrollCheckBox.isSelected() != settings.smoothScroll ||
+                   performanceProfileComboBox.getSelectedItem() != settings.performanceProfile ||
+                   (isCustomProfile() && typingGranularityComboBox.getSelectedItem() != settings.typingGranularity) ||
+                   (isCustomProfile() && highlightThrottleComboBox.getSelectedItem() != settings.highlightThrottle) ||
+                   highlightIntervalMs != settings.highlightIntervalMs ||
+                   !seekMarkerField.getText().equals(settings.seekMarker) ||
+                   timingModelComboBox.getSelectedItem() != settings.timingModel ||
+                   thinkPausesCheckBox.isSelected() != settings.thinkPauses ||
+                   fixedSeedCheckBox.isSelected() != settings.fixedSeed ||
+                   collectMetricsCheckBox.isSelected() != settings.collectMetrics ||
+                   previewModeCheckBox.isSelected() != settings.previewMode ||
+                   largeFileThresholdKb != settings.largeFileThresholdKb ||
+                   highlightWindowLines != settings.highlightWindowLines ||
+                   seed != settings.seed;
         } catch (NumberFormatException e) {
             return true;
         }
@@ -80,29 +169,45 @@ public class FakeTypingConfigurable implements Configurable {
     @Override
     public void apply() throws ConfigurationException {
         FakeTypingSettings settings = FakeTypingSettings.getInstance();
+        // 先读取到副本中校验，全部合法后再一次性保存，校验失败时不会留下只修改了一部分的设置
+        FakeTypingSettings edited = new FakeTypingSettings();
+        XmlSerializerUtil.copyBean(settings, edited);
         try {
-            settings.typingSpeed = Integer.parseInt(typingSpeedField.getText());
-            settings.minTypingSpeed = Integer.parseInt(minTypingSpeedField.getText());
-            settings.maxTypingSpeed = Integer.parseInt(maxTypingSpeedField.getText());
-            settings.randomSpeedVariation = randomSpeedVariationCheckBox.isSelected();
-            settings.randomVariationPercent = Integer.parseInt(randomVariationPercentField.getText());
-
-            // 验证设置值的合理性
-            if (settings.typingSpeed < 1 || settings.minTypingSpeed < 1 || settings.maxTypingSpeed < 1 ||
-                settings.randomVariationPercent < 0 || settings.randomVariationPercent > 100) {
-                throw new ConfigurationException("请输入有效的数值");
-            }
-
-            if (settings.minTypingSpeed > settings.maxTypingSpeed) {
-                throw new ConfigurationException("最小打字速度不能大于最大打字速度");
-            }
-
-            if (settings.typingSpeed < settings.minTypingSpeed || settings.typingSpeed > settings.maxTypingSpeed) {
-                throw new ConfigurationException("默认打字速度必须在最小和最大打字速度之间");
+            edited.typingSpeed = Integer.parseInt(typingSpeedField.getText());
+            edited.minTypingSpeed = Integer.parseInt(minTypingSpeedField.getText());
+            edited.maxTypingSpeed = Integer.parseInt(maxTypingSpeedField.getText());
+            edited.randomSpeedVariation = randomSpeedVariationCheckBox.isSelected();
+            edited.randomVariationPercent = Integer.parseInt(randomVariationPercentField.getText());
+            edited.undoMode = (FakeTypingSettings.UndoMode) undoModeComboBox.getSelectedItem();
+            edited.undoChunkSize = Integer.parseInt(undoChunkSizeField.getText());
+            edited.scrollSafeZoneLines = Integer.parseInt(scrollSafeZoneLinesField.getText());
+            edited.smoothScroll = smoothScrollCheckBox.isSelected();
+            edited.performanceProfile = (FakeTypingSettings.PerformanceProfile) performanceProfileComboBox.getSelectedItem();
+            // 预设决定的两项不覆盖自定义时的设置，切换回自定义时仍然有效
+            if (isCustomProfile()) {
+                edited.typingGranularity = (FakeTypingSettings.TypingGranularity) typingGranularityComboBox.getSelectedItem();
+                edited.highlightThrottle = (FakeTypingSettings.HighlightThrottle) highlightThrottleComboBox.getSelectedItem();
             }
+            edited.highlightIntervalMs = Integer.parseInt(highlightIntervalField.getText());
+            edited.seekMarker = seekMarkerField.getText();
+            edited.timingModel = (FakeTypingSettings.TimingModelType) timingModelComboBox.getSelectedItem();
+            edited.thinkPauses = thinkPausesCheckBox.isSelected();
+            edited.fixedSeed = fixedSeedCheckBox.isSelected();
+            edited.seed = Long.parseLong(seedField.getText().trim());
+            edited.collectMetrics = collectMetricsCheckBox.isSelected();
+            edited.previewMode = previewModeCheckBox.isSelected();
+            edited.largeFileThresholdKb = Integer.parseInt(largeFileThresholdField.getText());
+            edited.highlightWindowLines = Integer.parseInt(highlightWindowLinesField.getText());
         } catch (NumberFormatException e) {
             throw new ConfigurationException("请输入有效的数字");
         }
+
+        // 验证设置值的合理性
+        String error = TypingConfig.validate(edited);
+        if (error != null) {
+            throw new ConfigurationException(error);
+        }
+        settings.loadState(edited);
     }
 
     @Override
@@ -113,6 +218,49 @@ public class FakeTypingConfigurable implements Configurable {
         maxTypingSpeedField.setText(String.valueOf(settings.maxTypingSpeed));
         randomSpeedVariationCheckBox.setSelected(settings.randomSpeedVariation);
         randomVariationPercentField.setText(String.valueOf(settings.randomVariationPercent));
+        undoModeComboBox.setSelectedItem(settings.undoMode);
+        undoChunkSizeField.setText(String.valueOf(settings.undoChunkSize));
+        undoChunkSizeField.setEnabled(settings.undoMode == FakeTypingSettings.UndoMode.CHUNK);
+        scrollSafeZoneLinesField.setText(String.valueOf(settings.scrollSafeZoneLines));
+        smoothScrollCheckBox.setSelected(settings.smoothScroll);
+        typingGranularityComboBox.setSelectedItem(settings.typingGranularity);
+        highlightThrottleComboBox.setSelectedItem(settings.highlightThrottle);
+        highlightIntervalField.setText(String.valueOf(settings.highlightIntervalMs));
+        performanceProfileComboBox.setSelectedItem(settings.performanceProfile);
+        updateProfileControls();
+        seekMarkerField.setText(settings.seekMarker);
+        timingModelComboBox.setSelectedItem(settings.timingModel);
+        thinkPausesCheckBox.setSelected(settings.thinkPauses);
+        thinkPausesCheckBox.setEnabled(settings.timingModel == FakeTypingSettings.TimingModelType.HUMAN);
+        fixedSeedCheckBox.setSelected(settings.fixedSeed);
+        seedField.setText(String.valueOf(settings.seed));
+        seedField.setEnabled(settings.fixedSeed);
+        collectMetricsCheckBox.setSelected(settings.collectMetrics);
+        previewModeCheckBox.setSelected(settings.previewMode);
+        largeFileThresholdField.setText(String.valueOf(settings.largeFileThresholdKb));
+        highlightWindowLinesField.setText(String.valueOf(settings.highlightWindowLines));
+    }
+
+    private boolean isCustomProfile() {
+        return performanceProfileComboBox.getSelectedItem() == FakeTypingSettings.PerformanceProfile.CUSTOM;
+    }
+
+    /**
+     * 按所选预设更新输出粒度和代码分析方式：预设显示预设的值并禁用，自定义时显示已保存的设置
+     */
+    private void updateProfileControls() {
+        FakeTypingSettings.PerformanceProfile profile =
+                (FakeTypingSettings.PerformanceProfile) performanceProfileComboBox.getSelectedItem();
+        boolean custom = isCustomProfile();
+        FakeTypingSettings settings = FakeTypingSettings.getInstance();
+        typingGranularityComboBox.setEnabled(custom);
+        highlightThrottleComboBox.setEnabled(custom);
+        typingGranularityComboBox.setSelectedItem(custom || profile == null
+                ? settings.typingGranularity : profile.getGranularity());
+        highlightThrottleComboBox.setSelectedItem(custom || profile == null
+                ? settings.highlightThrottle : profile.getHighlightThrottle());
+        highlightIntervalField.setEnabled(custom &&
+                highlightThrottleComboBox.getSelectedItem() == FakeTypingSettings.HighlightThrottle.INTERVAL);
     }
 
     @Nullable
@@ -0,0 +1,155 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.datatransfer.DataFlavor;
+
+/**
+ * FakeTyping只输入差异动作类
+ * 把当前内容与剪贴板、其他文件、版本控制中的基线版本或磁盘上保存的版本比较，
+ * 只以打字机效果删除和输入不同的部分，相同的内容保持不动
+ */
+public class FakeTypingDiffAction extends AnAction {
+
+    /**
+     * 构造函数
+     */
+    public FakeTypingDiffAction() {
+        super("FakeTyping（只输入差异）", "只以打字机效果输入与比较内容不同的部分", null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        // 获取当前项目、编辑器和文档
+        final Project project = e.getRequiredData(CommonDataKeys.PROJECT);
+        final Editor editor = e.getRequiredData(CommonDataKeys.EDITOR);
+        final Document document = editor.getDocument();
+
+        // 如果该文档上已有进行中的会话，先还原
+        TypingSessionRegistry registry = TypingSessionRegistry.getInstance();
+        registry.restoreSession(document);
+
+        // 选择比较内容
+        DiffTargetDialog dialog = new DiffTargetDialog(project);
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        CharSequence other = loadText(project, document, dialog.getTargetSource());
+        if (other == null) {
+            return;
+        }
+        CharSequence current = document.getImmutableCharSequence();
+        if (StringUtil.equals(current, other)) {
+            Messages.showInfoMessage("所选内容与当前内容相同，没有需要输入的差异。", "FakeTyping");
+            return;
+        }
+
+        // 使用滑动组件让用户选择打字速度
+        FakeTypingSettings settings = FakeTypingSettings.getInstance();
+        Integer typingSpeed = FakeTypingAction.showSpeedSliderDialog(project, settings);
+        if (typingSpeed == null) {
+            return;
+        }
+
+        // 开始会话并创建控制面板，预览模式下在内存中的副本里输入，真实文件保持不变
+        TypingConfig config = settings.getConfig().withTypingSpeed(typingSpeed);
+        CharSequence initial = dialog.isReverse() ? other : current;
+        CharSequence target = dialog.isReverse() ? current : other;
+        Editor typingEditor = config.isPreviewMode()
+                ? FakeTypingService.getInstance(project).openPreviewEditor(
+                        FileDocumentManager.getInstance().getFile(document), initial, project)
+                : editor;
+        TypingSession session = registry.startDiffSession(project, typingEditor, config, initial, target);
+        TypingControlPanel.show(session);
+    }
+
+    /**
+     * 读取比较内容，失败时提示并返回null
+     * @param project 当前项目
+     * @param document 当前文档
+     * @param source 内容来源
+     * @return 内容，换行符统一为\n
+     */
+    @Nullable
+    private static CharSequence loadText(Project project, Document document, DiffTargetDialog.TargetSource source) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        switch (source) {
+            case CLIPBOARD: {
+                String text = CopyPasteManager.getInstance().getContents(DataFlavor.stringFlavor);
+                if (text == null) {
+                    Messages.showWarningDialog("剪贴板中没有文本。", "FakeTyping警告");
+                    return null;
+                }
+                return StringUtil.convertLineSeparators(text);
+            }
+            case FILE: {
+                VirtualFile chosen = FileChooser.chooseFile(
+                        FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor(), project, file);
+                if (chosen == null) {
+                    return null;
+                }
+                Document chosenDocument = FileDocumentManager.getInstance().getDocument(chosen);
+                if (chosenDocument == null) {
+                    Messages.showWarningDialog("无法读取所选文件的文本内容。", "FakeTyping警告");
+                    return null;
+                }
+                return chosenDocument.getImmutableCharSequence();
+            }
+            case VCS: {
+                Change change = file != null ? ChangeListManager.getInstance(project).getChange(file) : null;
+                ContentRevision revision = change != null ? change.getBeforeRevision() : null;
+                if (revision == null) {
+                    Messages.showWarningDialog("当前文件在版本控制中没有修改，或者是新增的文件。", "FakeTyping警告");
+                    return null;
+                }
+                try {
+                    String text = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                            revision::getContent, "读取基线版本", true, project);
+                    if (text == null) {
+                        Messages.showWarningDialog("无法读取基线版本的内容。", "FakeTyping警告");
+                        return null;
+                    }
+                    return StringUtil.convertLineSeparators(text);
+                } catch (VcsException ex) {
+                    Messages.showWarningDialog("读取基线版本失败：" + ex.getMessage(), "FakeTyping警告");
+                    return null;
+                }
+            }
+            default: {
+                if (file == null || !file.isValid()) {
+                    Messages.showWarningDialog("当前文档没有对应的磁盘文件。", "FakeTyping警告");
+                    return null;
+                }
+                return StringUtil.convertLineSeparators(LoadTextUtil.loadText(file).toString());
+            }
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        // 只有在编辑器中且有项目打开时才启用此操作
+        Project project = e.getProject();
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        e.getPresentation().setEnabledAndVisible(project != null && editor != null);
+    }
+}
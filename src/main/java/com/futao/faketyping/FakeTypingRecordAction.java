@@ -0,0 +1,83 @@
+package com.futao.faketyping;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.concurrent.CompletionException;
+
+/**
+ * FakeTyping按键录制动作类
+ * 开始或停止录制当前编辑器中的修改和光标移动，录制保存为 .ftrec 文件，可以用回放动作按原来的节奏重放
+ */
+public class FakeTypingRecordAction extends AnAction {
+
+    /**
+     * 构造函数
+     */
+    public FakeTypingRecordAction() {
+        super("FakeTyping（开始录制按键）", "录制当前编辑器中的修改和光标移动，之后可以按原来的节奏回放", null);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        // 只有在编辑器中且有项目打开时才启用此操作，正在录制时显示为停止录制
+        Project project = e.getProject();
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        e.getPresentation().setEnabledAndVisible(project != null && editor != null);
+        if (editor != null) {
+            boolean recording = KeystrokeRecorder.getRecorder(editor.getDocument()) != null;
+            e.getPresentation().setText(recording ? "FakeTyping（停止录制按键）" : "FakeTyping（开始录制按键）");
+        }
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final Project project = e.getRequiredData(CommonDataKeys.PROJECT);
+        final Editor editor = e.getRequiredData(CommonDataKeys.EDITOR);
+
+        // 正在录制时停止并保存
+        KeystrokeRecorder recorder = KeystrokeRecorder.getRecorder(editor.getDocument());
+        if (recorder != null) {
+            int recordCount = recorder.getRecordCount();
+            recorder.stop().whenComplete((file, error) -> ApplicationManager.getApplication().invokeLater(() -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    Messages.showErrorDialog(project, "保存按键录制失败：" + cause.getMessage(), "FakeTyping录制错误");
+                } else {
+                    Notifications.Bus.notify(new Notification("FakeTyping", "FakeTyping录制完成",
+                            "已录制 " + recordCount + " 条记录，保存到 " + file.getPath(),
+                            NotificationType.INFORMATION), project);
+                }
+            }));
+            return;
+        }
+
+        // 选择录制文件的保存位置，默认与当前文件同名
+        VirtualFile current = FileDocumentManager.getInstance().getFile(editor.getDocument());
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("保存按键录制",
+                "录制停止前修改会持续追加到该文件", KeystrokeLog.EXTENSION);
+        VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project)
+                .save(current != null ? current.getParent() : null,
+                        current != null ? current.getNameWithoutExtension() + "." + KeystrokeLog.EXTENSION : null);
+        if (target == null) {
+            return;
+        }
+        File file = target.getFile();
+        KeystrokeRecorder.start(project, editor, file);
+    }
+}
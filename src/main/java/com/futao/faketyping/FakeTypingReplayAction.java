@@ -0,0 +1,161 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.InputValidator;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * FakeTyping按键回放动作类
+ * 选择一个 .ftrec 录制文件，按录制时的节奏（可以加速）重放其中的修改和光标移动。
+ * 回放会先把文档替换为录制开始时的内容，录制的不是当前文件时让用户选择打开录制的文件或仍在当前文件中回放
+ */
+public class FakeTypingReplayAction extends AnAction {
+
+    /**
+     * 构造函数
+     */
+    public FakeTypingReplayAction() {
+        super("FakeTyping（回放按键录制）", "在当前编辑器中按录制时的节奏重放按键录制", null);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        // 只有在编辑器中且有项目打开时才启用此操作
+        Project project = e.getProject();
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        e.getPresentation().setEnabledAndVisible(project != null && editor != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final Project project = e.getRequiredData(CommonDataKeys.PROJECT);
+        final Editor current = e.getRequiredData(CommonDataKeys.EDITOR);
+
+        // 选择录制文件
+        VirtualFile recording = FileChooser.chooseFile(
+                FileChooserDescriptorFactory.createSingleFileDescriptor(KeystrokeLog.EXTENSION)
+                        .withTitle("选择按键录制"), project, null);
+        if (recording == null) {
+            return;
+        }
+
+        // 选择回放倍速
+        String input = Messages.showInputDialog(project, "回放倍速（1为录制时的速度）：", "FakeTyping回放",
+                null, "1", new InputValidator() {
+                    @Override
+                    public boolean checkInput(String inputString) {
+                        return parseRate(inputString) > 0;
+                    }
+
+                    @Override
+                    public boolean canClose(String inputString) {
+                        return checkInput(inputString);
+                    }
+                });
+        if (input == null) {
+            return;
+        }
+
+        // 先读取文件头，失败时不打开任何编辑器
+        KeystrokeLog.Reader reader;
+        try {
+            reader = new KeystrokeLog.Reader(VfsUtilCore.virtualToIoFile(recording));
+        } catch (IOException ex) {
+            Messages.showErrorDialog(project, "无法读取按键录制：" + ex.getMessage(), "FakeTyping回放错误");
+            return;
+        }
+        Editor editor = chooseTargetEditor(project, current, reader.getFilePath());
+        if (editor == null) {
+            closeQuietly(reader);
+            return;
+        }
+        Document document = editor.getDocument();
+        if (KeystrokeRecorder.getRecorder(document) != null) {
+            closeQuietly(reader);
+            Messages.showWarningDialog("该文件正在录制按键，请先停止录制。", "FakeTyping警告");
+            return;
+        }
+
+        // 如果该文档上已有进行中的会话，先还原
+        TypingSessionRegistry registry = TypingSessionRegistry.getInstance();
+        registry.restoreSession(document);
+
+        // 预览模式下在内存中的副本里回放，真实文件保持不变
+        TypingConfig config = FakeTypingSettings.getInstance().getConfig();
+        Editor replayEditor = config.isPreviewMode()
+                ? FakeTypingService.getInstance(project).openPreviewEditor(
+                        FileDocumentManager.getInstance().getFile(document), "", project)
+                : editor;
+        KeystrokeReplay replay = registry.startReplay(project, replayEditor, config, reader, parseRate(input));
+        TypingControlPanel.show(replay);
+    }
+
+    /**
+     * 确定回放所在的编辑器：录制的是当前文件时直接使用当前编辑器，
+     * 否则让用户选择打开录制的文件、仍在当前文件中回放（当前内容会被替换）或取消
+     * @param project 当前项目
+     * @param current 当前编辑器
+     * @param recordedPath 录制时的文件路径，可能为空
+     * @return 编辑器，取消时返回null
+     */
+    @Nullable
+    private static Editor chooseTargetEditor(Project project, Editor current, String recordedPath) {
+        VirtualFile currentFile = FileDocumentManager.getInstance().getFile(current.getDocument());
+        if (currentFile != null && currentFile.getPath().equals(recordedPath)) {
+            return current;
+        }
+        String currentName = currentFile != null ? currentFile.getName() : "当前文件";
+        VirtualFile recordedFile = recordedPath.isEmpty() ? null : LocalFileSystem.getInstance().findFileByPath(recordedPath);
+        if (recordedFile == null) {
+            String recorded = recordedPath.isEmpty() ? "一个未保存的文档" : recordedPath + "（文件已不存在）";
+            int answer = Messages.showOkCancelDialog(project,
+                    "该录制来自 " + recorded + "，回放会把 " + currentName + " 的内容替换为录制开始时的内容，是否继续？",
+                    "FakeTyping回放", "在当前文件中回放", "取消", Messages.getWarningIcon());
+            return answer == Messages.OK ? current : null;
+        }
+        int answer = Messages.showYesNoCancelDialog(project,
+                "该录制来自 " + recordedPath + "，回放会把目标文件的内容替换为录制开始时的内容。",
+                "FakeTyping回放", "打开录制的文件", "在 " + currentName + " 中回放", "取消", Messages.getWarningIcon());
+        if (answer == Messages.YES) {
+            return FileEditorManager.getInstance(project).openTextEditor(new OpenFileDescriptor(project, recordedFile), true);
+        }
+        return answer == Messages.NO ? current : null;
+    }
+
+    private static void closeQuietly(KeystrokeLog.Reader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+            // 已经不再需要该文件
+        }
+    }
+
+    /**
+     * 解析倍速，格式错误时返回0
+     */
+    private static double parseRate(String text) {
+        try {
+            double rate = Double.parseDouble(text.trim());
+            return Double.isFinite(rate) ? rate : 0;
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * FakeTyping打字脚本动作类
+ * 执行当前打开的 .ftscript 脚本，当前文件不是脚本时让用户选择一个脚本文件
+ */
+public class FakeTypingScriptAction extends AnAction {
+    // 打字脚本文件扩展名
+    public static final String SCRIPT_EXTENSION = "ftscript";
+
+    /**
+     * 构造函数
+     */
+    public FakeTypingScriptAction() {
+        super("FakeTyping（执行打字脚本）", "按打字脚本在多个文件中依次输入、删除和停顿", null);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final Project project = e.getRequiredData(CommonDataKeys.PROJECT);
+
+        // 当前文件是脚本时直接执行，否则选择脚本文件
+        VirtualFile scriptFile = e.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (scriptFile == null || !SCRIPT_EXTENSION.equalsIgnoreCase(scriptFile.getExtension())) {
+            scriptFile = FileChooser.chooseFile(
+                    FileChooserDescriptorFactory.createSingleFileDescriptor(SCRIPT_EXTENSION)
+                            .withTitle("选择打字脚本"), project, null);
+            if (scriptFile == null) {
+                return;
+            }
+        }
+        // 脚本在编辑器中有未保存的修改时先保存，保证执行的是看到的内容
+        FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        if (documentManager.isFileModified(scriptFile)) {
+            documentManager.saveDocument(documentManager.getDocument(scriptFile));
+        }
+
+        // 使用滑动组件让用户选择打字速度，脚本中的 speed 命令可以再修改
+        FakeTypingSettings settings = FakeTypingSettings.getInstance();
+        Integer typingSpeed = FakeTypingAction.showSpeedSliderDialog(project, settings);
+        if (typingSpeed == null) {
+            return;
+        }
+
+        // 脚本在第一条 open 命令之前作用于当前选中的编辑器
+        Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+        if (editor != null && scriptFile.equals(documentManager.getFile(editor.getDocument()))) {
+            editor = null;
+        }
+        TypingScriptRunner runner;
+        try {
+            runner = new TypingScriptRunner(project, scriptFile, settings.getConfig().withTypingSpeed(typingSpeed), editor);
+        } catch (IOException ex) {
+            Messages.showErrorDialog(project, "无法读取打字脚本：" + ex.getMessage(), "FakeTyping脚本错误");
+            return;
+        }
+        // 脚本出错时提示出错的脚本行
+        runner.getCompletion().whenComplete((completed, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                ApplicationManager.getApplication().invokeLater(() ->
+                        Messages.showErrorDialog(project, cause.getMessage(), "FakeTyping脚本错误"));
+            }
+        });
+        runner.start();
+        TypingControlPanel.show(runner);
+    }
+}
@@ -0,0 +1,210 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * FakeTyping的编程接口（项目级）
+ * 供自动录制等无人值守的场景使用：不弹出任何对话框和控制面板，完成时不显示通知；配置为预览模式时在预览编辑器中打字，
+ * 每个方法都可以在任意线程调用，返回的Future在打字完成时以true完成，被还原或取消时以false完成，
+ * 无法打开文件或脚本出错时异常完成。
+ */
+public class FakeTypingService {
+    private final Project project;
+
+    public FakeTypingService(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * 获取项目的服务实例
+     * @param project 项目
+     * @return FakeTypingService实例
+     */
+    public static FakeTypingService getInstance(@NotNull Project project) {
+        return project.getService(FakeTypingService.class);
+    }
+
+    /**
+     * 使用当前设置创建配置，不弹出速度选择对话框
+     * @param typingSpeed 打字速度（毫秒/字符），小于等于0时使用设置中的默认速度
+     * @return 配置
+     */
+    public static TypingConfig createConfig(int typingSpeed) {
+        TypingConfig config = FakeTypingSettings.getInstance().getConfig();
+        return typingSpeed > 0 ? config.withTypingSpeed(typingSpeed) : config;
+    }
+
+    /**
+     * 清空文件后以打字机效果重新输入全部内容
+     * @param file 文件
+     * @param config 会话配置
+     * @return 会话结束时完成
+     */
+    public CompletableFuture<Boolean> typeFile(@NotNull VirtualFile file, @NotNull TypingConfig config) {
+        return startOnEdt(file, "", config);
+    }
+
+    /**
+     * 把文件设置为起始内容后，只删除和输入与当前内容不同的部分，完成后文件恢复为当前内容
+     * @param file 文件
+     * @param initialContent 起始内容
+     * @param config 会话配置
+     * @return 会话结束时完成
+     */
+    public CompletableFuture<Boolean> typeDiff(@NotNull VirtualFile file, @NotNull CharSequence initialContent,
+                                               @NotNull TypingConfig config) {
+        return startOnEdt(file, initialContent, config);
+    }
+
+    /**
+     * 依次重新输入多个文件，前一个文件完成后才开始下一个；某个文件被取消或出错时不再继续
+     * @param files 文件列表
+     * @param config 会话配置
+     * @return 全部完成时以true完成
+     */
+    public CompletableFuture<Boolean> typeFiles(@NotNull List<VirtualFile> files, @NotNull TypingConfig config) {
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+        for (VirtualFile file : files) {
+            result = result.thenCompose(completed -> completed
+                    ? typeFile(file, config)
+                    : CompletableFuture.completedFuture(false));
+        }
+        return result;
+    }
+
+    /**
+     * 执行打字脚本
+     * @param scriptFile 脚本文件
+     * @param config 配置，脚本中的 speed 命令会在此基础上修改打字速度
+     * @return 脚本执行完成时完成
+     */
+    public CompletableFuture<Boolean> runScript(@NotNull VirtualFile scriptFile, @NotNull TypingConfig config) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed()) {
+                result.complete(false);
+                return;
+            }
+            try {
+                TypingScriptRunner runner = new TypingScriptRunner(project, scriptFile, config, null);
+                runner.setNotifyOnCompletion(false);
+                forward(runner.getCompletion(), result);
+                runner.start();
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 打开文件的文本编辑器，不抢占焦点
+     * 无界面运行时没有编辑器窗口，此时创建一个独立的编辑器，在 parent 释放时一起释放
+     * @param file 文件
+     * @param parent 独立编辑器的生命周期
+     * @return 编辑器，文件不是文本文件时返回null
+     */
+    @Nullable
+    public Editor openEditor(@NotNull VirtualFile file, @NotNull Disposable parent) {
+        Editor editor = FileEditorManager.getInstance(project).openTextEditor(new OpenFileDescriptor(project, file), false);
+        if (editor != null) {
+            return editor;
+        }
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        if (document == null) {
+            return null;
+        }
+        Editor created = EditorFactory.getInstance().createEditor(document, project);
+        Disposer.register(parent, () -> EditorFactory.getInstance().releaseEditor(created));
+        return created;
+    }
+
+    /**
+     * 打开预览编辑器：内容保存在内存中的 {@link LightVirtualFile} 里，文件类型与源文件相同，因此语法高亮一致；
+     * 在其中打字不会修改真实文件，也不会触发索引、本地历史和版本控制的变更
+     * 无界面运行时创建一个独立的编辑器，在 parent 释放时一起释放
+     * @param source 源文件，为null时按纯文本处理
+     * @param initialContent 预览的初始内容
+     * @param parent 独立编辑器的生命周期
+     * @return 预览编辑器
+     */
+    public Editor openPreviewEditor(@Nullable VirtualFile source, @NotNull CharSequence initialContent,
+                                    @NotNull Disposable parent) {
+        FileType fileType = source != null ? source.getFileType() : PlainTextFileType.INSTANCE;
+        String name = source != null ? source.getName() : "FakeTyping.txt";
+        LightVirtualFile preview = new LightVirtualFile("预览 " + name, fileType, initialContent);
+        preview.setOriginalFile(source);
+        preview.setWritable(true);
+        Editor editor = FileEditorManager.getInstance(project).openTextEditor(new OpenFileDescriptor(project, preview), true);
+        if (editor != null) {
+            return editor;
+        }
+        Document document = FileDocumentManager.getInstance().getDocument(preview);
+        Editor created = EditorFactory.getInstance().createEditor(document, project, preview, false);
+        Disposer.register(parent, () -> EditorFactory.getInstance().releaseEditor(created));
+        return created;
+    }
+
+    /**
+     * 在EDT上打开编辑器（预览模式下打开预览编辑器）并开始会话，打字完成后文件内容与当前内容相同
+     */
+    private CompletableFuture<Boolean> startOnEdt(VirtualFile file, CharSequence initialContent, TypingConfig config) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed()) {
+                result.complete(false);
+                return;
+            }
+            // 会话结束后释放为它创建的独立编辑器
+            Disposable editorLifetime = Disposer.newDisposable("FakeTyping " + file.getName());
+            Disposer.register(project, editorLifetime);
+            result.whenComplete((completed, error) ->
+                    ApplicationManager.getApplication().invokeLater(() -> Disposer.dispose(editorLifetime)));
+            Document document = FileDocumentManager.getInstance().getDocument(file);
+            Editor editor = document == null ? null : config.isPreviewMode()
+                    ? openPreviewEditor(file, initialContent, editorLifetime)
+                    : openEditor(file, editorLifetime);
+            if (editor == null) {
+                result.completeExceptionally(new IOException("无法在编辑器中打开 " + file.getPath()));
+                return;
+            }
+            TypingSessionRegistry registry = TypingSessionRegistry.getInstance();
+            registry.restoreSession(editor.getDocument());
+            TypingSession session = new TypingSession(project, editor, config, initialContent,
+                    document.getImmutableCharSequence());
+            session.setNotifyOnCompletion(false);
+            forward(session.getCompletion(), result);
+            registry.start(session);
+        });
+        return result;
+    }
+
+    private static void forward(CompletableFuture<Boolean> from, CompletableFuture<Boolean> to) {
+        from.whenComplete((completed, error) -> {
+            if (error != null) {
+                to.completeExceptionally(error);
+            } else {
+                to.complete(completed);
+            }
+        });
+    }
+}
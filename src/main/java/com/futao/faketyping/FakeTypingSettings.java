@@ -5,6 +5,7 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.intellij.util.xmlb.annotations.Transient;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -26,6 +27,201 @@ public class FakeTypingSettings implements PersistentStateComponent<FakeTypingSe
     public boolean randomSpeedVariation = true;
     // 随机速度变化范围（百分比）
     public int randomVariationPercent = 30;
+    // 撤销历史的记录方式
+    public UndoMode undoMode = UndoMode.SESSION;
+    // 按块合并撤销时，每块包含的字符数
+    public int undoChunkSize = 1000;
+    // 视图跟随的安全区（行），光标离开可见区域边缘这么多行以内才会滚动
+    public int scrollSafeZoneLines = 3;
+    // 是否启用平滑滚动：每次换行按整行滚动，而不是跳到光标位置
+    public boolean smoothScroll = false;
+    // 性能预设，选择自定义以外的预设时，输出粒度和打字期间的代码分析方式由预设决定
+    public PerformanceProfile performanceProfile = PerformanceProfile.CUSTOM;
+    // 输出粒度
+    public TypingGranularity typingGranularity = TypingGranularity.CHAR;
+    // 打字期间的代码分析节流方式
+    public HighlightThrottle highlightThrottle = HighlightThrottle.OFF;
+    // 按间隔刷新代码分析时的间隔（毫秒）
+    public int highlightIntervalMs = 1000;
+    // 控制面板"下一个标记"跳转使用的标记文本
+    public String seekMarker = "@mark";
+    // 打字节奏模型
+    public TimingModelType timingModel = TimingModelType.UNIFORM;
+    // 仿真人节奏下，是否在输入代码块之前、空行之后停顿思考
+    public boolean thinkPauses = true;
+    // 是否使用固定的随机种子，固定后每次打字的节奏完全相同，便于多次录制
+    public boolean fixedSeed = false;
+    // 固定的随机种子
+    public long seed = 0;
+    // 是否收集性能指标（速度、调度延迟、写命令耗时等），在控制面板中显示并可导出为CSV
+    public boolean collectMetrics = false;
+    // 预览模式：在内存中的副本里打字，真实文件、索引和本地历史保持不变
+    public boolean previewMode = false;
+    // 大文件阈值（KB），达到阈值的文件打字时只对光标附近的窗口做语法着色，0表示不启用
+    public int largeFileThresholdKb = 1024;
+    // 大文件模式下着色窗口在光标前后各包含的行数
+    public int highlightWindowLines = 100;
+
+    // 由当前设置生成的配置，设置修改后重新生成
+    private TypingConfig config;
+
+    /**
+     * 性能预设：打包帧间隔、每帧最多写入的字符数、打字期间的代码分析方式和输出粒度
+     */
+    public enum PerformanceProfile {
+        // 使用各项的单独设置，60帧且不限制每帧写入量
+        CUSTOM("自定义", TypingEngine.FRAME_INTERVAL_MS, 0, null, null),
+        // 60帧逐字符输入，每行完成时刷新代码分析，画面最平滑
+        RECORDING_4K("4K录制", 16, 0, HighlightThrottle.LINE, TypingGranularity.CHAR),
+        // 30帧逐单词输入，每帧最多写入32个字符，落后时分几帧补齐，打字期间暂停代码分析
+        LOW_END("低配笔记本", 33, 32, HighlightThrottle.SUSPEND, TypingGranularity.WORD),
+        // 20帧逐行输入，不限制每帧写入量，打字期间暂停代码分析
+        MAX_THROUGHPUT("最大吞吐量", 50, 0, HighlightThrottle.SUSPEND, TypingGranularity.LINE);
+
+        private final String displayName;
+        private final int frameIntervalMs;
+        private final int maxBatchChars;
+        private final HighlightThrottle highlightThrottle;
+        private final TypingGranularity granularity;
+
+        PerformanceProfile(String displayName, int frameIntervalMs, int maxBatchChars,
+                           HighlightThrottle highlightThrottle, TypingGranularity granularity) {
+            this.displayName = displayName;
+            this.frameIntervalMs = frameIntervalMs;
+            this.maxBatchChars = maxBatchChars;
+            this.highlightThrottle = highlightThrottle;
+            this.granularity = granularity;
+        }
+
+        /**
+         * 帧间隔（毫秒）
+         */
+        public int getFrameIntervalMs() {
+            return frameIntervalMs;
+        }
+
+        /**
+         * 每帧最多写入的字符数，0表示不限制
+         */
+        public int getMaxBatchChars() {
+            return maxBatchChars;
+        }
+
+        /**
+         * 打字期间的代码分析方式，自定义时为null
+         */
+        public HighlightThrottle getHighlightThrottle() {
+            return highlightThrottle;
+        }
+
+        /**
+         * 输出粒度，自定义时为null
+         */
+        public TypingGranularity getGranularity() {
+            return granularity;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 每次输出的单元
+     */
+    public enum TypingGranularity {
+        // 逐字符输入
+        CHAR("逐字符"),
+        // 逐单词/符号输入
+        WORD("逐单词"),
+        // 逐行输入
+        LINE("逐行"),
+        // 空白和样板代码（import、许可证注释等）整块输入，其余逐字符输入
+        ADAPTIVE("自适应");
+
+        private final String displayName;
+
+        TypingGranularity(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 打字节奏模型
+     */
+    public enum TimingModelType {
+        // 每个字符相同的速度，随机变化时均匀浮动
+        UNIFORM("均匀速度"),
+        // 按字符、指法和代码结构计算每个按键的延迟
+        HUMAN("仿真人");
+
+        private final String displayName;
+
+        TimingModelType(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 打字期间的代码分析节流方式
+     */
+    public enum HighlightThrottle {
+        // 不节流，与普通编辑相同
+        OFF("正常分析"),
+        // 按固定间隔刷新
+        INTERVAL("按间隔刷新"),
+        // 一行或一条语句输入完成时刷新
+        LINE("每行/语句完成时刷新"),
+        // 打字期间完全暂停，结束后恢复
+        SUSPEND("打字期间暂停");
+
+        private final String displayName;
+
+        HighlightThrottle(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 打字会话写入撤销历史的方式
+     */
+    public enum UndoMode {
+        // 整个会话合并为一条撤销命令
+        SESSION("整个会话合并为一次撤销"),
+        // 每N个字符合并为一条撤销命令
+        CHUNK("每N个字符合并为一次撤销"),
+        // 每帧一条撤销命令
+        PER_FRAME("每帧一次撤销"),
+        // 不写入撤销历史，只能通过"还原"按钮回滚
+        NONE("不记录撤销历史");
+
+        private final String displayName;
+
+        UndoMode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
 
     /**
      * 获取设置实例
@@ -36,6 +232,20 @@ public class FakeTypingSettings implements PersistentStateComponent<FakeTypingSe
         return ServiceManager.getService(FakeTypingSettings.class);
     }
 
+    /**
+     * 获取由当前设置生成的配置（使用默认打字速度），设置不变时一直返回同一个对象
+     * 会话开始时在此基础上修改打字速度，打字过程中不再读取持久化设置
+     *
+     * @return 配置
+     */
+    @Transient
+    public synchronized TypingConfig getConfig() {
+        if (config == null) {
+            config = TypingConfig.fromSettings(this, typingSpeed);
+        }
+        return config;
+    }
+
     @Nullable
     @Override
     public FakeTypingSettings getState() {
@@ -43,7 +253,8 @@ public class FakeTypingSettings implements PersistentStateComponent<FakeTypingSe
     }
 
     @Override
-    public void loadState(@NotNull FakeTypingSettings state) {
+    public synchronized void loadState(@NotNull FakeTypingSettings state) {
         XmlSerializerUtil.copyBean(state, this);
+        config = null;
     }
 }
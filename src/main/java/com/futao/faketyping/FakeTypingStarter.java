@@ -0,0 +1,158 @@
+package com.futao.faketyping;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ex.ApplicationEx;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 命令行入口，用于无人值守的自动录制：
+ * <pre>
+ * idea fakeTyping &lt;项目目录&gt; [--speed 毫秒/字符] [--seed 随机种子] [--script 脚本.ftscript] [文件...]
+ * </pre>
+ * 打开项目后依次重新输入每个文件（或执行脚本），全部完成后保存并退出 IDE；
+ * 相对路径相对于项目目录。过程中不会弹出任何对话框，出错时把原因输出到标准错误并以退出码1退出。
+ * 录制需要看到编辑器，因此以带界面的方式运行。
+ */
+public class FakeTypingStarter implements ApplicationStarter {
+    // 命令名，与 plugin.xml 中 appStarter 的 id 一致
+    private static final String COMMAND_NAME = "fakeTyping";
+    private static final String USAGE =
+            "用法: fakeTyping <项目目录> [--speed 毫秒/字符] [--seed 随机种子] [--script 脚本.ftscript] [文件...]";
+
+    @Override
+    public boolean isHeadless() {
+        return false;
+    }
+
+    @Override
+    public void main(@NotNull List<String> args) {
+        // 第一个参数是命令名
+        List<String> arguments = args.isEmpty() || !COMMAND_NAME.equals(args.get(0))
+                ? args : args.subList(1, args.size());
+        int typingSpeed = 0;
+        Long seed = null;
+        String script = null;
+        List<String> files = new ArrayList<>();
+        String projectDir = null;
+        try {
+            for (int i = 0; i < arguments.size(); i++) {
+                String argument = arguments.get(i);
+                switch (argument) {
+                    case "--speed":
+                        typingSpeed = parseSpeed(value(arguments, ++i));
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value(arguments, ++i));
+                        break;
+                    case "--script":
+                        script = value(arguments, ++i);
+                        break;
+                    default:
+                        if (projectDir == null) {
+                            projectDir = argument;
+                        } else {
+                            files.add(argument);
+                        }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            exit(1, e.getMessage() + "\n" + USAGE);
+            return;
+        }
+        if (projectDir == null || (script == null && files.isEmpty())) {
+            exit(1, USAGE);
+            return;
+        }
+
+        Path projectPath = Path.of(projectDir).toAbsolutePath();
+        Project project = ProjectUtil.openOrImport(projectPath, null, true);
+        if (project == null) {
+            exit(1, "无法打开项目 " + projectPath);
+            return;
+        }
+        TypingConfig config = FakeTypingService.createConfig(typingSpeed);
+        if (seed != null) {
+            config = config.withSeed(seed);
+        }
+        FakeTypingService service = FakeTypingService.getInstance(project);
+        CompletableFuture<Boolean> result;
+        try {
+            result = script != null
+                    ? service.runScript(findFile(projectPath, script), config)
+                    : service.typeFiles(findFiles(projectPath, files), config);
+        } catch (IllegalArgumentException e) {
+            exit(1, e.getMessage());
+            return;
+        }
+        result.whenComplete((completed, error) -> ApplicationManager.getApplication().invokeLater(() -> {
+            FileDocumentManager.getInstance().saveAllDocuments();
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                exit(1, cause.getMessage());
+            } else if (!completed) {
+                exit(1, "打字被取消");
+            } else {
+                exit(0, null);
+            }
+        }));
+    }
+
+    private static String value(List<String> arguments, int index) {
+        if (index >= arguments.size()) {
+            throw new IllegalArgumentException(arguments.get(index - 1) + " 缺少参数");
+        }
+        return arguments.get(index);
+    }
+
+    /**
+     * 解析打字速度，必须在设置中的最小和最大打字速度之间
+     */
+    private static int parseSpeed(String text) {
+        int speed = Integer.parseInt(text);
+        FakeTypingSettings settings = FakeTypingSettings.getInstance();
+        if (speed < settings.minTypingSpeed || speed > settings.maxTypingSpeed) {
+            throw new IllegalArgumentException("--speed 必须在 " + settings.minTypingSpeed + " 到 "
+                    + settings.maxTypingSpeed + " 毫秒/字符之间: " + text);
+        }
+        return speed;
+    }
+
+    private static List<VirtualFile> findFiles(Path projectPath, List<String> paths) {
+        List<VirtualFile> files = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            files.add(findFile(projectPath, path));
+        }
+        return files;
+    }
+
+    private static VirtualFile findFile(Path projectPath, String path) {
+        Path resolved = projectPath.resolve(path).normalize();
+        VirtualFile file = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(resolved);
+        if (file == null || file.isDirectory()) {
+            throw new IllegalArgumentException("找不到文件 " + resolved);
+        }
+        return file;
+    }
+
+    private static void exit(int exitCode, String message) {
+        if (message != null) {
+            System.err.println(message);
+        }
+        ApplicationManager.getApplication().invokeLater(() ->
+                ((ApplicationEx) ApplicationManager.getApplication())
+                        .exit(ApplicationEx.FORCE_EXIT | ApplicationEx.EXIT_CONFIRMED, exitCode));
+    }
+}
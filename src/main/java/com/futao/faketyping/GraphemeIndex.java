@@ -0,0 +1,143 @@
+package com.futao.faketyping;
+
+import java.util.BitSet;
+
+/**
+ * 字素簇边界索引
+ * 会话开始时对内容扫描一次，记录所有"不能在此处断开"的位置（代理对中间、组合字符之前、
+ * emoji 连接符前后、国旗等），输出时按字素簇前进，不会把 emoji 或组合字符拆成半个。
+ * 大多数位置都是边界，因此只记录例外位置，普通文本几乎不占内存；查询时不分配对象。
+ */
+public class GraphemeIndex {
+    // 零宽连接符
+    private static final int ZWJ = 0x200D;
+
+    private final int length;
+    // 置位表示该位置不是字素簇边界
+    private final BitSet nonBoundaries = new BitSet();
+
+    /**
+     * 构造函数，扫描一次内容建立索引
+     * @param text 内容
+     */
+    public GraphemeIndex(CharSequence text) {
+        this.length = text.length();
+        int previous = -1;
+        int regionalIndicators = 0;
+        int offset = 0;
+        while (offset < length) {
+            char c = text.charAt(offset);
+            int codePoint = c;
+            int size = 1;
+            if (Character.isHighSurrogate(c) && offset + 1 < length && Character.isLowSurrogate(text.charAt(offset + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(offset + 1));
+                size = 2;
+                // 代理对中间不能断开
+                nonBoundaries.set(offset + 1);
+            }
+
+            if (previous >= 0 && !isBoundary(previous, codePoint, regionalIndicators)) {
+                nonBoundaries.set(offset);
+            }
+
+            if (isRegionalIndicator(codePoint)) {
+                regionalIndicators++;
+            } else {
+                regionalIndicators = 0;
+            }
+            previous = codePoint;
+            offset += size;
+        }
+    }
+
+    /**
+     * 判断位置是否是字素簇边界
+     * @param offset 位置
+     */
+    public boolean isBoundary(int offset) {
+        return offset <= 0 || offset >= length || !nonBoundaries.get(offset);
+    }
+
+    /**
+     * 获取指定位置之后的下一个字素簇边界
+     * @param offset 位置
+     * @return 下一个边界，不超过内容长度
+     */
+    public int nextBoundary(int offset) {
+        if (offset >= length) {
+            return length;
+        }
+        return Math.min(length, nonBoundaries.nextClearBit(offset + 1));
+    }
+
+    /**
+     * 获取指定位置之前的上一个字素簇边界
+     * @param offset 位置
+     * @return 上一个边界，不小于0
+     */
+    public int previousBoundary(int offset) {
+        if (offset <= 1) {
+            return 0;
+        }
+        if (offset > length) {
+            return length;
+        }
+        return Math.max(0, nonBoundaries.previousClearBit(offset - 1));
+    }
+
+    /**
+     * 把位置对齐到不小于它的最近边界
+     * @param offset 位置
+     */
+    public int ceilBoundary(int offset) {
+        return isBoundary(offset) ? offset : nextBoundary(offset);
+    }
+
+    /**
+     * 判断两个相邻码点之间是否可以断开
+     * @param previous 前一个码点
+     * @param current 当前码点
+     * @param regionalIndicators 前面连续的区域指示符个数
+     */
+    private static boolean isBoundary(int previous, int current, int regionalIndicators) {
+        // CR LF 不拆开
+        if (previous == '\r' && current == '\n') {
+            return false;
+        }
+        // 换行之后总是可以断开
+        if (previous == '\n' || previous == '\r') {
+            return true;
+        }
+        // 组合字符、变体选择符、肤色修饰符、零宽连接符都附着在前一个字符上
+        if (isExtend(current) || current == ZWJ) {
+            return false;
+        }
+        // 零宽连接符把前后两个 emoji 连接成一个
+        if (previous == ZWJ) {
+            return false;
+        }
+        // 区域指示符两两组成一面国旗
+        if (isRegionalIndicator(previous) && isRegionalIndicator(current)) {
+            return regionalIndicators % 2 == 0;
+        }
+        return true;
+    }
+
+    private static boolean isExtend(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.ENCLOSING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                // 变体选择符
+                || (codePoint >= 0xFE00 && codePoint <= 0xFE0F)
+                || (codePoint >= 0xE0100 && codePoint <= 0xE01EF)
+                // emoji 肤色修饰符
+                || (codePoint >= 0x1F3FB && codePoint <= 0x1F3FF)
+                // 标签字符（子区域旗帜）
+                || (codePoint >= 0xE0020 && codePoint <= 0xE007F);
+    }
+
+    private static boolean isRegionalIndicator(int codePoint) {
+        return codePoint >= 0x1F1E6 && codePoint <= 0x1F1FF;
+    }
+}
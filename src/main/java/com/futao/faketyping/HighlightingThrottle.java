@@ -0,0 +1,144 @@
+package com.futao.faketyping;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打字期间的代码分析节流
+ * 打字过程中文档大部分时间处于语法不完整的状态，每次插入都会重启代码分析。
+ * 节流开启后，会话期间关闭该文件的代码分析，只在到达刷新间隔或一行/一条语句输入完成时
+ * 临时打开一次，分析完成（或超过时间窗口）后再次关闭；会话结束或还原时完全恢复。只能在EDT上使用。
+ * 大文件每次分析都要处理整个文档，因此不论设置如何，整个会话期间都暂停代码分析。
+ */
+public class HighlightingThrottle implements Disposable {
+    // 每次临时打开代码分析的最长时间（毫秒）
+    private static final long MAX_WINDOW_MS = 500;
+
+    private final Project project;
+    private final Document document;
+    private final FakeTypingSettings.HighlightThrottle mode;
+    private final long intervalNanos;
+
+    private PsiFile psiFile;
+    private boolean suspended = false;
+    // 代码分析是否临时打开中
+    private boolean windowOpen = false;
+    private long windowOpenedNanos;
+    private long lastRefreshNanos;
+
+    /**
+     * 构造函数
+     * @param project 当前项目
+     * @param document 当前文档
+     * @param config 会话配置
+     * @param largeFile 是否为大文件
+     */
+    public HighlightingThrottle(Project project, Document document, TypingConfig config, boolean largeFile) {
+        this.project = project;
+        this.document = document;
+        this.mode = largeFile ? FakeTypingSettings.HighlightThrottle.SUSPEND : config.getHighlightThrottle();
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getHighlightIntervalMs());
+    }
+
+    /**
+     * 会话开始：关闭该文件的代码分析
+     */
+    public void suspend() {
+        if (mode == FakeTypingSettings.HighlightThrottle.OFF || suspended) {
+            return;
+        }
+        psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
+        if (psiFile == null) {
+            return;
+        }
+        suspended = true;
+        lastRefreshNanos = System.nanoTime();
+        DaemonCodeAnalyzer.getInstance(project).setHighlightingEnabled(psiFile, false);
+        // 临时打开期间分析完成后立即关闭
+        project.getMessageBus().connect(this).subscribe(DaemonCodeAnalyzer.DAEMON_EVENT_TOPIC,
+                new DaemonCodeAnalyzer.DaemonListener() {
+                    @Override
+                    public void daemonFinished(@NotNull Collection<? extends FileEditor> fileEditors) {
+                        if (windowOpen) {
+                            closeWindow();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 每次写入一批内容后调用，按模式决定是否临时打开代码分析
+     * @param batch 本次写入的内容
+     */
+    public void afterWrite(CharSequence batch) {
+        if (!suspended || mode == FakeTypingSettings.HighlightThrottle.SUSPEND) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (windowOpen) {
+            if (now - windowOpenedNanos > TimeUnit.MILLISECONDS.toNanos(MAX_WINDOW_MS)) {
+                closeWindow();
+            }
+            return;
+        }
+        boolean due = mode == FakeTypingSettings.HighlightThrottle.INTERVAL
+                ? now - lastRefreshNanos >= intervalNanos
+                : completesStatement(batch);
+        if (due) {
+            windowOpen = true;
+            windowOpenedNanos = now;
+            lastRefreshNanos = now;
+            DaemonCodeAnalyzer analyzer = DaemonCodeAnalyzer.getInstance(project);
+            analyzer.setHighlightingEnabled(psiFile, true);
+            analyzer.restart(psiFile);
+        }
+    }
+
+    /**
+     * 会话结束或还原：完全恢复代码分析并重新分析一次
+     */
+    public void resume() {
+        if (suspended && !project.isDisposed() && psiFile.isValid()) {
+            DaemonCodeAnalyzer analyzer = DaemonCodeAnalyzer.getInstance(project);
+            analyzer.setHighlightingEnabled(psiFile, true);
+            analyzer.restart(psiFile);
+        }
+        suspended = false;
+        windowOpen = false;
+        Disposer.dispose(this);
+    }
+
+    private void closeWindow() {
+        windowOpen = false;
+        if (suspended && psiFile.isValid()) {
+            DaemonCodeAnalyzer.getInstance(project).setHighlightingEnabled(psiFile, false);
+        }
+    }
+
+    /**
+     * 判断本批内容是否完成了一行或一条语句
+     */
+    private static boolean completesStatement(CharSequence batch) {
+        for (int i = batch.length() - 1; i >= 0; i--) {
+            char c = batch.charAt(i);
+            if (c == '\n' || c == ';' || c == '}') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
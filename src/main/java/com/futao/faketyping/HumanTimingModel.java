@@ -0,0 +1,211 @@
+package com.futao.faketyping;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 仿真人节奏模型
+ * 按键代价由三部分组成：字符本身的代价（标点、换行之后停顿更长，需要Shift的字符更慢），
+ * 相邻两个按键的指法代价（同一手指连续按不同键最慢，左右手交替最快），以及可选的"思考"停顿
+ * （输入代码块之前、空行之后）。所有代价表都是按码点下标访问的基本类型数组，计算时不使用Map、不装箱，
+ * 每个字符只有几次数组访问，整个时间线在会话开始时计算一次。
+ */
+public class HumanTimingModel implements TimingModel {
+    // 代价表覆盖的码点范围（ASCII），范围之外的字符使用默认代价
+    private static final int TABLE_SIZE = 128;
+    // 手指编号：0-3 左手小指到食指，4-5 拇指，6-9 右手食指到小指，10 未知
+    private static final int FINGER_COUNT = 11;
+    private static final byte UNKNOWN_FINGER = 10;
+    // 每个字符对应的手指
+    private static final byte[] FINGER = new byte[TABLE_SIZE];
+    // 字符自身的代价（千分比），包含输入之后的停顿
+    private static final short[] CHAR_COST = new short[TABLE_SIZE];
+    // 相邻两个手指的代价（千分比），下标为 前一个手指 * FINGER_COUNT + 后一个手指
+    private static final short[] BIGRAPH_COST = new short[FINGER_COUNT * FINGER_COUNT];
+    // 同一个键连续按下的代价（千分比）
+    private static final int REPEAT_COST = 850;
+    // 中日韩文字需要经过输入法，代价（千分比）
+    private static final int CJK_COST = 2000;
+    // 其他非ASCII字符的代价（千分比）
+    private static final int OTHER_COST = 1300;
+    // 退格键的代价（千分比），连续退格比输入快
+    private static final int BACKSPACE_COST = 600;
+    // 思考停顿相对基础延迟的倍数
+    private static final int THINK_PAUSE_FACTOR = 12;
+    // 单个字符的延迟最多为最大延迟的倍数
+    private static final int MAX_PAUSE_FACTOR = 4;
+
+    static {
+        // 未在键盘上列出的字符（控制字符等）不参与指法计算
+        Arrays.fill(FINGER, UNKNOWN_FINGER);
+        // QWERTY 键盘上每一列由哪个手指负责，Shift 组合的符号与原键相同
+        assignFinger("`~1!qQaAzZ", 0);
+        assignFinger("2@wWsSxX", 1);
+        assignFinger("3#eEdDcC", 2);
+        assignFinger("4$5%rRtTfFgGvVbB", 3);
+        assignFinger(" ", 5);
+        assignFinger("6^7&yYuUhHjJnNmM", 6);
+        assignFinger("8*iIkK,<", 7);
+        assignFinger("9(oOlL.>", 8);
+        assignFinger("0)-_=+pP[{]}\\|;:'\"/?\t\n", 9);
+
+        // 字符代价：字母为基准，数字和需要 Shift 的字符更慢，标点和换行之后会停顿
+        Arrays.fill(CHAR_COST, (short) 1000);
+        for (int c = '0'; c <= '9'; c++) {
+            CHAR_COST[c] = 1150;
+        }
+        for (int c = 'A'; c <= 'Z'; c++) {
+            CHAR_COST[c] = 1250;
+        }
+        for (char c : "~!@#$%^&*()_+{}|:\"<>?".toCharArray()) {
+            CHAR_COST[c] = 1300;
+        }
+        CHAR_COST[' '] = 900;
+        CHAR_COST['\t'] = 900;
+        CHAR_COST['.'] = 1300;
+        CHAR_COST[','] = 2000;
+        CHAR_COST[';'] = 2500;
+        CHAR_COST[':'] = 1800;
+        CHAR_COST['{'] = 1800;
+        CHAR_COST['}'] = 1800;
+        CHAR_COST['\n'] = 3500;
+        // 回车与换行成对出现，代价记在换行上
+        CHAR_COST['\r'] = 0;
+
+        // 指法代价：同手交替为基准，左右手交替更快，同一手指连续按不同键最慢，拇指（空格）与任何手指配合都较快
+        for (int previous = 0; previous < FINGER_COUNT; previous++) {
+            for (int next = 0; next < FINGER_COUNT; next++) {
+                int cost;
+                if (previous == UNKNOWN_FINGER || next == UNKNOWN_FINGER) {
+                    cost = 1000;
+                } else if (previous == 4 || previous == 5 || next == 4 || next == 5) {
+                    cost = 900;
+                } else if (previous == next) {
+                    cost = 1350;
+                } else if ((previous < 4) != (next < 4)) {
+                    cost = 800;
+                } else {
+                    cost = 1000;
+                }
+                BIGRAPH_COST[previous * FINGER_COUNT + next] = (short) cost;
+            }
+        }
+    }
+
+    private final int typingSpeed;
+    private final int maxDelay;
+    private final int variationPercent;
+    private final boolean thinkPauses;
+    private final SplittableRandom random;
+
+    /**
+     * 构造函数
+     * @param config 会话配置
+     * @param random 随机数生成器
+     */
+    public HumanTimingModel(TypingConfig config, SplittableRandom random) {
+        this.typingSpeed = config.getTypingSpeed();
+        this.variationPercent = config.isRandomSpeedVariation() ? config.getRandomVariationPercent() : 0;
+        this.thinkPauses = config.isThinkPauses();
+        this.random = random;
+        this.maxDelay = config.getMaxTypingSpeed();
+    }
+
+    @Override
+    public int unitDelay(CharSequence text, int start, int end, int weight) {
+        if (weight <= 0 || end <= start) {
+            return 0;
+        }
+        int length = text.length();
+        long costPermille = 0;
+        int codePoints = 0;
+        int offset = start;
+        while (offset < end) {
+            int codePoint = Character.codePointAt(text, offset);
+            offset += Character.charCount(codePoint);
+            int next = offset < length ? text.charAt(offset) : -1;
+            costPermille += keyCost(codePoint, next);
+            codePoints++;
+        }
+        // 整个单元的代价按权重折算：逐单词/逐行时权重等于长度，自适应的整块单元按平均一个字符计算
+        long delay = costPermille * typingSpeed * weight / ((long) codePoints * 1000);
+        delay = jitter(delay);
+        // 标点和换行之后的停顿允许超过最大延迟，但不超过其若干倍
+        delay = Math.max(1, Math.min((long) maxDelay * weight * MAX_PAUSE_FACTOR, delay));
+        if (thinkPauses && startsBlock(text, end)) {
+            delay += (long) typingSpeed * THINK_PAUSE_FACTOR;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, delay);
+    }
+
+    @Override
+    public int deleteDelay(CharSequence text, int start, int end, boolean selection) {
+        long delay = selection
+                ? (long) typingSpeed * SELECTION_DELETE_WEIGHT
+                : (long) typingSpeed * BACKSPACE_COST / 1000;
+        return (int) Math.max(1, jitter(delay));
+    }
+
+    /**
+     * 按随机速度变化范围调整延迟：两个均匀分布相加，中间多两端少，比单个均匀分布更接近真人的波动
+     */
+    private long jitter(long delay) {
+        if (variationPercent == 0) {
+            return delay;
+        }
+        int jitter = random.nextInt(variationPercent + 1) + random.nextInt(variationPercent + 1) - variationPercent;
+        return delay + delay * jitter / 100;
+    }
+
+    /**
+     * 计算一个按键的代价（千分比）
+     * @param codePoint 当前码点
+     * @param next 后一个字符，没有时为-1
+     */
+    private static int keyCost(int codePoint, int next) {
+        if (codePoint >= TABLE_SIZE) {
+            return isCjk(codePoint) ? CJK_COST : OTHER_COST;
+        }
+        int cost = CHAR_COST[codePoint];
+        if (next < 0 || next >= TABLE_SIZE) {
+            return cost;
+        }
+        int bigraph = codePoint == next ? REPEAT_COST : BIGRAPH_COST[FINGER[codePoint] * FINGER_COUNT + FINGER[next]];
+        return cost * bigraph / 1000;
+    }
+
+    /**
+     * 判断单元结束之后是否要开始一个新的代码块：单元以换行结束，且前一行以"{"或":"结尾，
+     * 或者后面是一个空行
+     * @param text 内容
+     * @param end 单元结束位置
+     */
+    private static boolean startsBlock(CharSequence text, int end) {
+        if (end <= 0 || text.charAt(end - 1) != '\n') {
+            return false;
+        }
+        if (end < text.length() && (text.charAt(end) == '\n' || text.charAt(end) == '\r')) {
+            return true;
+        }
+        // 向前跳过空白，找到这一行最后一个有效字符
+        int i = end - 2;
+        while (i >= 0 && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\r')) {
+            i--;
+        }
+        return i >= 0 && (text.charAt(i) == '{' || text.charAt(i) == ':');
+    }
+
+    private static boolean isCjk(int codePoint) {
+        return (codePoint >= 0x2E80 && codePoint <= 0x9FFF)
+                || (codePoint >= 0xAC00 && codePoint <= 0xD7AF)
+                || (codePoint >= 0xF900 && codePoint <= 0xFAFF)
+                || (codePoint >= 0xFF00 && codePoint <= 0xFFEF)
+                || (codePoint >= 0x20000 && codePoint <= 0x2FFFF);
+    }
+
+    private static void assignFinger(String keys, int finger) {
+        for (int i = 0; i < keys.length(); i++) {
+            FINGER[keys.charAt(i)] = (byte) finger;
+        }
+    }
+}
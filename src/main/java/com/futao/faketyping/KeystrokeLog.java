@@ -0,0 +1,282 @@
+package com.futao.faketyping;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 按键录制文件（.ftrec）的格式
+ * <pre>
+ * 文件头：int 标记、int 修改的字符总数、long 录制时长（纳秒）、UTF 文件路径、int 字节数 + 录制开始时内容的UTF-8字节
+ * 记录：byte 类型、变长 与上一条记录的时间差（纳秒），之后
+ *   修改：变长 位置、变长 删除的字符数、变长 字节数 + 插入内容的UTF-8字节
+ *   光标：变长 光标位置
+ * </pre>
+ * 变长整数每字节7位，低位在前。录制过程中只在文件末尾追加记录，停止时回填文件头中的总数和时长；
+ * 录制被中断时总数为0，记录仍然可以回放。读取时按记录流式解析，不会把整个文件读入内存。
+ */
+public final class KeystrokeLog {
+    // 文件头标记，格式变化时修改
+    static final int MAGIC = 0x46545231;
+    // 录制文件扩展名
+    public static final String EXTENSION = "ftrec";
+    // 文件头中字符总数和录制时长的位置，停止录制时回填
+    static final long TOTALS_OFFSET = 4;
+    static final byte EDIT = 1;
+    static final byte CARET = 2;
+    // 一条记录除插入内容外最多占用的字节数：类型和4个变长整数
+    static final int MAX_RECORD_OVERHEAD = 1 + 4 * 10;
+
+    private KeystrokeLog() {
+    }
+
+    /**
+     * 一条记录，读取时重复使用同一个对象
+     */
+    public static final class Record {
+        private byte kind;
+        private long timeNanos;
+        private int offset;
+        private int oldLength;
+        private String text = "";
+
+        public boolean isEdit() {
+            return kind == EDIT;
+        }
+
+        /**
+         * 相对录制开始的时间（纳秒）
+         */
+        public long getTimeNanos() {
+            return timeNanos;
+        }
+
+        /**
+         * 修改的位置，或光标记录的光标位置
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * 删除的字符数
+         */
+        public int getOldLength() {
+            return oldLength;
+        }
+
+        /**
+         * 插入的内容
+         */
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * 流式读取录制文件
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final String filePath;
+        private final int totalChars;
+        private final long durationNanos;
+        private final String initialContent;
+        private final Record record = new Record();
+        private byte[] textBuffer = new byte[256];
+
+        /**
+         * 打开录制文件并读取文件头
+         * @param file 录制文件
+         * @throws IOException 文件不存在或不是录制文件
+         */
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file.getName() + " 不是按键录制文件");
+                }
+                totalChars = in.readInt();
+                durationNanos = in.readLong();
+                filePath = in.readUTF();
+                byte[] initial = new byte[in.readInt()];
+                in.readFully(initial);
+                initialContent = new String(initial, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                in.close();
+                throw e instanceof EOFException ? new IOException(file.getName() + " 的文件头不完整", e) : e;
+            }
+        }
+
+        /**
+         * 读取下一条记录
+         * @return 记录（下次调用时会被覆盖），文件结束时返回null；最后一条记录写了一半时同样视为结束
+         * @throws IOException 读取失败或记录格式错误
+         */
+        public Record next() throws IOException {
+            int kind = in.read();
+            if (kind < 0) {
+                return null;
+            }
+            try {
+                record.kind = (byte) kind;
+                record.timeNanos += readVarLong(in);
+                if (kind == EDIT) {
+                    record.offset = (int) readVarLong(in);
+                    record.oldLength = (int) readVarLong(in);
+                    int length = (int) readVarLong(in);
+                    if (length > textBuffer.length) {
+                        textBuffer = Arrays.copyOf(textBuffer, Math.max(length, textBuffer.length * 2));
+                    }
+                    in.readFully(textBuffer, 0, length);
+                    record.text = new String(textBuffer, 0, length, StandardCharsets.UTF_8);
+                } else if (kind == CARET) {
+                    record.offset = (int) readVarLong(in);
+                    record.oldLength = 0;
+                    record.text = "";
+                } else {
+                    throw new IOException("无法识别的记录类型 " + kind);
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+            return record;
+        }
+
+        /**
+         * 录制的文件路径
+         */
+        public String getFilePath() {
+            return filePath;
+        }
+
+        /**
+         * 删除和插入的字符总数，录制被中断时为0
+         */
+        public int getTotalChars() {
+            return totalChars;
+        }
+
+        /**
+         * 录制时长（纳秒），录制被中断时为0
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * 录制开始时文档的内容
+         */
+        public String getInitialContent() {
+            return initialContent;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * 写入文件头，字符总数和录制时长先写为0，停止录制时用 {@link #writeTotals} 回填
+     * @param out 输出流
+     * @param filePath 录制的文件路径
+     * @param initialContent 录制开始时的内容
+     */
+    static void writeHeader(OutputStream out, String filePath, CharSequence initialContent) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(0);
+        header.writeLong(0);
+        header.writeUTF(filePath);
+        byte[] content = initialContent.toString().getBytes(StandardCharsets.UTF_8);
+        header.writeInt(content.length);
+        header.write(content);
+    }
+
+    /**
+     * 把一条修改记录编码到缓冲区
+     * @param buffer 缓冲区，调用方保证剩余空间不少于 {@link #MAX_RECORD_OVERHEAD} 加上插入内容的字节数
+     * @param position 写入位置
+     * @param deltaNanos 与上一条记录的时间差（纳秒）
+     * @param offset 修改的位置
+     * @param oldLength 删除的字符数
+     * @param text 插入内容的UTF-8字节，没有时为null
+     * @return 写入后的位置
+     */
+    static int writeEdit(byte[] buffer, int position, long deltaNanos, int offset, int oldLength, byte[] text) {
+        int length = text == null ? 0 : text.length;
+        buffer[position++] = EDIT;
+        position = writeVarLong(buffer, position, deltaNanos);
+        position = writeVarLong(buffer, position, offset);
+        position = writeVarLong(buffer, position, oldLength);
+        position = writeVarLong(buffer, position, length);
+        if (length > 0) {
+            System.arraycopy(text, 0, buffer, position, length);
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * 把一条光标记录编码到缓冲区
+     * @param buffer 缓冲区，调用方保证剩余空间不少于 {@link #MAX_RECORD_OVERHEAD}
+     * @param position 写入位置
+     * @param deltaNanos 与上一条记录的时间差（纳秒）
+     * @param offset 光标位置
+     * @return 写入后的位置
+     */
+    static int writeCaret(byte[] buffer, int position, long deltaNanos, int offset) {
+        buffer[position++] = CARET;
+        position = writeVarLong(buffer, position, deltaNanos);
+        return writeVarLong(buffer, position, offset);
+    }
+
+    /**
+     * 回填文件头中的字符总数和录制时长
+     */
+    static void writeTotals(File file, int totalChars, long durationNanos) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(TOTALS_OFFSET);
+            out.writeInt(totalChars);
+            out.writeLong(durationNanos);
+        }
+    }
+
+    /**
+     * 写入变长整数
+     * @param buffer 缓冲区，调用方保证剩余空间不少于10字节
+     * @param position 写入位置
+     * @param value 非负整数
+     * @return 写入后的位置
+     */
+    static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+}
@@ -0,0 +1,249 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 按键录制
+ * 监听文档修改和主光标移动，把位置、插入内容和纳秒时间差编码为 {@link KeystrokeLog} 格式的记录。
+ * 监听器在EDT上只把记录追加到内存缓冲区，缓冲区满64KB后交给单线程执行器追加到文件末尾，不在EDT上读写磁盘，
+ * 因此对正常编辑几乎没有额外开销，录制时长也不受内存限制。项目关闭时自动停止录制。
+ */
+public class KeystrokeRecorder implements DocumentListener, CaretListener, Disposable {
+    private static final Logger LOG = Logger.getInstance(KeystrokeRecorder.class);
+    // 文档上进行中的录制
+    private static final Key<KeystrokeRecorder> RECORDER_KEY = Key.create("FakeTyping.KeystrokeRecorder");
+    // 缓冲区达到这个大小时写入文件
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final int MAX_RECORD_OVERHEAD = KeystrokeLog.MAX_RECORD_OVERHEAD;
+
+    // 所有录制共用的顺序执行器，保证文件头先于记录写入
+    private static final ExecutorService IO_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("FakeTyping Recorder", 1);
+
+    private final Editor editor;
+    private final Document document;
+    private final File file;
+    private final long startNanos = System.nanoTime();
+    // 以下字段只在EDT上访问
+    private byte[] buffer = new byte[FLUSH_THRESHOLD + MAX_RECORD_OVERHEAD];
+    private int size = 0;
+    private long lastNanos = startNanos;
+    private int lastCaretOffset;
+    private long changedChars = 0;
+    private int recordCount = 0;
+    // 停止录制后完成
+    private final CompletableFuture<File> result = new CompletableFuture<>();
+    private boolean stopped = false;
+    // 以下字段只在执行器上访问
+    private OutputStream out;
+    private IOException error;
+
+    private KeystrokeRecorder(Editor editor, File file) {
+        this.editor = editor;
+        this.document = editor.getDocument();
+        this.file = file;
+        this.lastCaretOffset = editor.getCaretModel().getOffset();
+    }
+
+    /**
+     * 开始录制编辑器中的修改（只在EDT上调用）
+     * @param project 当前项目
+     * @param editor 编辑器
+     * @param file 录制文件，已存在时被覆盖
+     * @return 录制
+     */
+    public static KeystrokeRecorder start(@NotNull Project project, @NotNull Editor editor, @NotNull File file) {
+        KeystrokeRecorder recorder = new KeystrokeRecorder(editor, file);
+        Disposer.register(project, recorder);
+        VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(recorder.document);
+        String filePath = virtualFile != null ? virtualFile.getPath() : "";
+        CharSequence initial = recorder.document.getImmutableCharSequence();
+        IO_EXECUTOR.execute(() -> recorder.writeHeader(filePath, initial));
+        recorder.document.addDocumentListener(recorder, recorder);
+        editor.getCaretModel().addCaretListener(recorder, recorder);
+        recorder.document.putUserData(RECORDER_KEY, recorder);
+        return recorder;
+    }
+
+    /**
+     * 获取文档上进行中的录制
+     * @param document 文档
+     * @return 录制，没有时返回null
+     */
+    @Nullable
+    public static KeystrokeRecorder getRecorder(@NotNull Document document) {
+        return document.getUserData(RECORDER_KEY);
+    }
+
+    @Override
+    public void documentChanged(@NotNull DocumentEvent event) {
+        CharSequence inserted = event.getNewFragment();
+        byte[] text = inserted.length() == 0 ? null : inserted.toString().getBytes(StandardCharsets.UTF_8);
+        int length = text == null ? 0 : text.length;
+        ensureCapacity(MAX_RECORD_OVERHEAD + length);
+        size = KeystrokeLog.writeEdit(buffer, size, elapsed(), event.getOffset(), event.getOldLength(), text);
+        changedChars += event.getOldLength() + inserted.length();
+        lastCaretOffset = event.getOffset() + inserted.length();
+        recorded();
+    }
+
+    @Override
+    public void caretPositionChanged(@NotNull CaretEvent event) {
+        // 只记录主光标的主动移动，输入引起的光标移动在回放修改时自然产生
+        Caret caret = event.getCaret();
+        if (document.isInEventsHandling() || (caret != null && caret != editor.getCaretModel().getPrimaryCaret())) {
+            return;
+        }
+        int offset = caret != null ? caret.getOffset() : editor.getCaretModel().getOffset();
+        if (offset == lastCaretOffset) {
+            return;
+        }
+        lastCaretOffset = offset;
+        ensureCapacity(MAX_RECORD_OVERHEAD);
+        size = KeystrokeLog.writeCaret(buffer, size, elapsed(), offset);
+        recorded();
+    }
+
+    /**
+     * 停止录制：写入缓冲区中剩余的记录，回填文件头中的总数和时长（只在EDT上调用）
+     * @return 文件写完后完成，写入失败时异常完成
+     */
+    public CompletableFuture<File> stop() {
+        if (stopped) {
+            return result;
+        }
+        stopped = true;
+        long durationNanos = System.nanoTime() - startNanos;
+        Disposer.dispose(this);
+        byte[] remaining = buffer;
+        int remainingSize = size;
+        buffer = null;
+        int totalChars = (int) Math.min(Integer.MAX_VALUE, changedChars);
+        IO_EXECUTOR.execute(() -> {
+            write(remaining, remainingSize);
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                if (error != null) {
+                    throw error;
+                }
+                KeystrokeLog.writeTotals(file, totalChars, durationNanos);
+                result.complete(file);
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 已录制的记录数
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void dispose() {
+        if (document.getUserData(RECORDER_KEY) == this) {
+            document.putUserData(RECORDER_KEY, null);
+        }
+        // 项目关闭时保存已录制的内容
+        stop();
+    }
+
+    private long elapsed() {
+        long now = System.nanoTime();
+        long delta = now - lastNanos;
+        lastNanos = now;
+        return Math.max(0, delta);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (size + needed > buffer.length) {
+            // 一次粘贴大量内容时缓冲区按需变大，写入后恢复为默认大小
+            flush();
+            if (needed > buffer.length) {
+                buffer = new byte[needed];
+            }
+        }
+    }
+
+    /**
+     * 一条记录写入缓冲区后调用，缓冲区满时交给执行器写入文件
+     */
+    private void recorded() {
+        recordCount++;
+        if (size >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (size == 0) {
+            return;
+        }
+        byte[] full = buffer;
+        int fullSize = size;
+        IO_EXECUTOR.execute(() -> write(full, fullSize));
+        buffer = new byte[FLUSH_THRESHOLD + MAX_RECORD_OVERHEAD];
+        size = 0;
+    }
+
+    private void writeHeader(String filePath, CharSequence initial) {
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(file), FLUSH_THRESHOLD);
+            // 字符总数和时长在停止录制时回填
+            KeystrokeLog.writeHeader(out, filePath, initial);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void write(byte[] bytes, int length) {
+        if (out == null || error != null || length == 0) {
+            return;
+        }
+        try {
+            out.write(bytes, 0, length);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(IOException e) {
+        // 写入失败不影响正常编辑，停止录制时报告
+        LOG.warn("FakeTyping recording could not be written: " + file, e);
+        error = e;
+    }
+}
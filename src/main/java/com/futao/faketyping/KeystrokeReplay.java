@@ -0,0 +1,351 @@
+package com.futao.faketyping;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按键录制的回放
+ * 把文档设置为录制开始时的内容后，按录制时的节奏（乘以倍速）重放每一次修改和光标移动。
+ * 与打字引擎相同，帧任务运行在共享的 {@link TypingScheduler} 上，每帧把到期的记录合并为一次写命令，
+ * 每个回放最多只有一个尚未执行完的写命令；录制文件在帧线程上边读边放，任何时刻内存中只有一帧的记录，
+ * 一小时以上的录制也可以回放。实现 {@link TypingPlayback}，可以用控制面板暂停、快进或还原；
+ * 与打字会话一样登记在 {@link TypingSessionRegistry} 中，同一文档上开始新的会话或回放时会先还原它。
+ */
+public class KeystrokeReplay implements TypingPlayback {
+    private static final Logger LOG = Logger.getInstance(KeystrokeReplay.class);
+    // 一帧最多应用的记录数，落后很多时分几帧补齐，避免一次写命令过大
+    private static final int MAX_RECORDS_PER_FRAME = 4096;
+
+    private final long id;
+    private final Project project;
+    private final Editor editor;
+    private final Document document;
+    private final TypingConfig config;
+    private final KeystrokeLog.Reader reader;
+    private final TypingUndoGroup undoGroup;
+    private final ViewportFollower follower;
+    // 还原时恢复成的内容，结束后释放
+    private CharSequence originalContent;
+    // 已从文件中读出、还没有到期的记录
+    private PendingRecord lookahead;
+    private boolean exhausted = false;
+
+    private long startNanos;
+    private long pausedAtNanos;
+    private double playbackRate = 1;
+    private volatile boolean running = false;
+    private volatile boolean paused = false;
+    private volatile boolean ended = false;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    // 已回放的删除和插入字符数
+    private volatile int replayedChars = 0;
+    private volatile int caretOffset;
+    // 回放完成时以true完成，被还原或取消时以false完成
+    private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+
+    /**
+     * 录制中的一条记录的副本
+     */
+    private record PendingRecord(boolean edit, long timeNanos, int offset, int oldLength, String text) {
+    }
+
+    /**
+     * 构造函数，创建后需要调用 {@link #start()} 开始回放
+     * @param project 当前项目
+     * @param editor 回放所在的编辑器
+     * @param config 配置（撤销历史、视图跟随和帧间隔）
+     * @param reader 已读取文件头的录制文件，回放结束时关闭
+     */
+    public KeystrokeReplay(Project project, Editor editor, TypingConfig config, KeystrokeLog.Reader reader) {
+        this.project = project;
+        this.editor = editor;
+        this.document = editor.getDocument();
+        this.config = config;
+        this.reader = reader;
+        this.undoGroup = new TypingUndoGroup(project, document, config);
+        this.follower = new ViewportFollower(editor, config);
+        this.originalContent = document.getImmutableCharSequence();
+        // 项目关闭或编辑器释放时由调度服务取消回放
+        this.id = TypingScheduler.getInstance().register(project, editor, this::onCancelled);
+    }
+
+    /**
+     * 把文档设置为录制开始时的内容并开始回放（只在EDT上调用）
+     */
+    public void start() {
+        String initial = reader.getInitialContent();
+        undoGroup.write(Math.max(document.getTextLength(), initial.length()), () -> document.setText(initial));
+        caretOffset = 0;
+        follower.follow(0);
+        startNanos = System.nanoTime();
+        running = true;
+        TypingScheduler.getInstance().scheduleFrames(id, this::onFrame, config.getFrameIntervalMs());
+    }
+
+    /**
+     * 每一帧执行一次：读取到期的记录并合并为一次写命令，上一次写命令尚未执行完时跳过本帧
+     */
+    private synchronized void onFrame() {
+        if (!running || ended || pendingWrites.get() > 0) {
+            return;
+        }
+        long elapsedNanos = (long) ((System.nanoTime() - startNanos) * playbackRate);
+        List<PendingRecord> batch = new ArrayList<>();
+        try {
+            while (batch.size() < MAX_RECORDS_PER_FRAME) {
+                if (lookahead == null && !exhausted) {
+                    KeystrokeLog.Record record = reader.next();
+                    if (record == null) {
+                        exhausted = true;
+                    } else {
+                        lookahead = new PendingRecord(record.isEdit(), record.getTimeNanos(), record.getOffset(),
+                                record.getOldLength(), record.getText());
+                    }
+                }
+                if (lookahead == null || lookahead.timeNanos() > elapsedNanos) {
+                    break;
+                }
+                batch.add(lookahead);
+                lookahead = null;
+            }
+        } catch (IOException e) {
+            LOG.warn("FakeTyping recording could not be read", e);
+            exhausted = true;
+        }
+        boolean finished = exhausted && lookahead == null;
+        if (finished) {
+            running = false;
+            TypingScheduler.getInstance().pauseFrames(id);
+        }
+        if (batch.isEmpty() && !finished) {
+            return;
+        }
+        pendingWrites.incrementAndGet();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            try {
+                if (!ended) {
+                    apply(batch);
+                }
+            } finally {
+                pendingWrites.decrementAndGet();
+            }
+            if (finished && !ended) {
+                onCompleted();
+            }
+        }, project.getDisposed());
+    }
+
+    /**
+     * 在EDT上用一次写命令应用一批记录，只在最后移动一次光标
+     */
+    private void apply(List<PendingRecord> batch) {
+        int[] changed = {0};
+        for (PendingRecord record : batch) {
+            changed[0] += record.oldLength() + record.text().length();
+        }
+        undoGroup.write(changed[0], () -> {
+            int caret = caretOffset;
+            for (PendingRecord record : batch) {
+                int length = document.getTextLength();
+                if (record.edit()) {
+                    // 回放期间文档被其他操作修改过时，把位置限制在文档范围内
+                    int start = Math.min(record.offset(), length);
+                    int end = Math.min(start + record.oldLength(), length);
+                    document.replaceString(start, end, record.text());
+                    caret = start + record.text().length();
+                } else {
+                    caret = Math.min(record.offset(), length);
+                }
+            }
+            caretOffset = caret;
+            follower.follow(caret);
+        });
+        replayedChars += changed[0];
+    }
+
+    @Override
+    public Project getProject() {
+        return project;
+    }
+
+    @Override
+    public Editor getEditor() {
+        return editor;
+    }
+
+    @Override
+    public TypingConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 回放使用录制的节奏，没有随机种子
+     */
+    @Override
+    public long getSeed() {
+        return 0;
+    }
+
+    @Override
+    public boolean hasSeed() {
+        return false;
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public boolean isEnded() {
+        return ended;
+    }
+
+    @Override
+    public synchronized void pause() {
+        if (ended || paused) {
+            return;
+        }
+        paused = true;
+        if (running) {
+            running = false;
+            pausedAtNanos = System.nanoTime();
+            TypingScheduler.getInstance().pauseFrames(id);
+        }
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (ended || !paused) {
+            return;
+        }
+        paused = false;
+        if (exhausted && lookahead == null) {
+            return;
+        }
+        // 起点顺延暂停的时长
+        startNanos += System.nanoTime() - pausedAtNanos;
+        running = true;
+        TypingScheduler.getInstance().scheduleFrames(id, this::onFrame, config.getFrameIntervalMs());
+    }
+
+    @Override
+    public void restore() {
+        CharSequence content = originalContent;
+        end(false);
+        if (content == null) {
+            return;
+        }
+        ApplicationManager.getApplication().invokeAndWait(() -> undoGroup.write(content.length(), () -> {
+            document.setText(content);
+        }));
+        Notifications.Bus.notify(new Notification("FakeTyping", "FakeTyping已还原",
+                "文件内容已还原为回放前的状态", NotificationType.INFORMATION), project);
+    }
+
+    /**
+     * 录制是按时间流式读取的，不支持跳转
+     */
+    @Override
+    public boolean seekToLine(int line) {
+        return false;
+    }
+
+    @Override
+    public boolean seekToNextMarker() {
+        return false;
+    }
+
+    @Override
+    public synchronized void setPlaybackRate(double rate) {
+        if (rate <= 0 || rate == playbackRate) {
+            return;
+        }
+        // 录制中的当前位置保持不变
+        long base = running ? System.nanoTime() : pausedAtNanos;
+        double recordingNanos = (base - startNanos) * playbackRate;
+        startNanos = base - (long) (recordingNanos / rate);
+        playbackRate = rate;
+    }
+
+    @Override
+    public int getTypedLength() {
+        return replayedChars;
+    }
+
+    /**
+     * 录制的字符总数，录制被中断、文件头中没有总数时返回已回放的字符数
+     */
+    @Override
+    public int getContentLength() {
+        return Math.max(reader.getTotalChars(), replayedChars);
+    }
+
+    @Override
+    public int getCaretOffset() {
+        return caretOffset;
+    }
+
+    @Override
+    public String getTitle() {
+        return "FakeTyping 回放";
+    }
+
+    @Override
+    public String getStepDescription() {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(reader.getDurationNanos());
+        return seconds > 0 ? String.format("录制时长 %d:%02d，", seconds / 60, seconds % 60) : "";
+    }
+
+    /**
+     * 回放结束时完成：全部回放完成为true，被还原或取消为false
+     */
+    public CompletableFuture<Boolean> getCompletion() {
+        return completion;
+    }
+
+    private void onCompleted() {
+        end(true);
+        Notifications.Bus.notify(new Notification("FakeTyping", "FakeTyping回放完成",
+                "已按录制的节奏回放 " + replayedChars + " 个字符的修改；" + undoGroup.report(),
+                NotificationType.INFORMATION), project);
+    }
+
+    /**
+     * 回放被调度服务取消（项目关闭或编辑器释放）
+     */
+    private void onCancelled() {
+        end(false);
+    }
+
+    private synchronized void end(boolean completed) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        running = false;
+        originalContent = null;
+        lookahead = null;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+            // 已经不再需要该文件
+        }
+        TypingScheduler.getInstance().finish(id);
+        TypingSessionRegistry.getInstance().remove(document, this);
+        completion.complete(completed);
+    }
+}
@@ -0,0 +1,246 @@
+package com.futao.faketyping;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorSettings;
+import com.intellij.openapi.editor.HighlighterColors;
+import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.ex.util.EmptyEditorHighlighter;
+import com.intellij.openapi.editor.highlighter.EditorHighlighter;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.HighlighterTargetArea;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileTypes.PlainSyntaxHighlighter;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.fileTypes.SyntaxHighlighter;
+import com.intellij.openapi.fileTypes.SyntaxHighlighterFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.tree.IElementType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大文件打字时的滑动窗口高亮
+ * 文档达到大文件阈值时，会话期间把编辑器的高亮器换成不做词法分析的空高亮器，关闭软换行和缩进参考线，
+ * 只对光标前后若干行做词法分析，并用编辑器标记着色。窗口之前已经稳定的内容保留已有的着色，不再重新分析；
+ * 着色只保留到光标之前 {@link #RETAINED_WINDOWS} 个窗口的范围，更早的标记被释放，打字期间滚动到更前面时看到的是无着色的文本。
+ * 因此每次写入的开销和标记的数量都只与窗口大小有关，不随文档变大而增加；会话结束或还原时恢复完整的高亮。只能在EDT上使用。
+ * 窗口总是从行首按初始词法状态开始分析，跨越窗口起点的块注释或多行字符串在打字期间可能着色不准确。
+ */
+public class LargeFileHighlighter {
+    // 光标没有换行时，两次刷新窗口之间的最短间隔（毫秒）
+    private static final long REFRESH_INTERVAL_MS = 100;
+    // 光标之前保留着色的范围是窗口行数的几倍，更早的着色标记被释放
+    static final int RETAINED_WINDOWS = 4;
+
+    private final Project project;
+    private final Editor editor;
+    private final int windowLines;
+    // 每种词法单元的着色，没有着色的单元对应空的 TextAttributes
+    private final Map<IElementType, TextAttributes> attributesCache = new HashMap<>();
+    // 窗口分析时添加的着色标记，按位置排序：开头是保留范围中最早的标记，末尾是窗口中的标记
+    private final Deque<RangeHighlighter> highlighters = new ArrayDeque<>();
+
+    private boolean active = false;
+    private SyntaxHighlighter syntaxHighlighter;
+    private Lexer lexer;
+    private EditorColorsScheme scheme;
+    private EditorHighlighter savedHighlighter;
+    private boolean savedSoftWraps;
+    private boolean savedIndentGuides;
+    // 上一次刷新窗口时光标所在的行
+    private int lastLine = -1;
+    private long lastRefreshNanos;
+
+    /**
+     * 词法分析结果的接收者
+     */
+    interface TokenSink {
+        void token(IElementType type, int start, int end);
+    }
+
+    /**
+     * 构造函数
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     */
+    public LargeFileHighlighter(Project project, Editor editor, TypingConfig config) {
+        this.project = project;
+        this.editor = editor;
+        this.windowLines = config.getHighlightWindowLines();
+    }
+
+    /**
+     * 判断内容是否达到大文件阈值
+     * @param length 内容长度（字符）
+     * @param config 会话配置
+     * @return 阈值大于0且内容不小于阈值时为true
+     */
+    public static boolean isLargeFile(int length, TypingConfig config) {
+        return config.getLargeFileThresholdKb() > 0 && length >= config.getLargeFileThresholdKb() * 1024L;
+    }
+
+    /**
+     * 会话开始：换用空高亮器，关闭软换行和缩进参考线，并分析光标所在的窗口
+     */
+    public void activate() {
+        if (active || !(editor instanceof EditorEx editorEx)) {
+            return;
+        }
+        VirtualFile file = FileDocumentManager.getInstance().getFile(editor.getDocument());
+        syntaxHighlighter = SyntaxHighlighterFactory.getSyntaxHighlighter(
+                file != null ? file.getFileType() : PlainTextFileType.INSTANCE, project, file);
+        if (syntaxHighlighter == null) {
+            syntaxHighlighter = new PlainSyntaxHighlighter();
+        }
+        lexer = syntaxHighlighter.getHighlightingLexer();
+        scheme = editor.getColorsScheme();
+        active = true;
+
+        savedHighlighter = editorEx.getHighlighter();
+        editorEx.setHighlighter(new EmptyEditorHighlighter(scheme.getAttributes(HighlighterColors.TEXT)));
+        EditorSettings settings = editor.getSettings();
+        savedSoftWraps = settings.isUseSoftWraps();
+        savedIndentGuides = settings.isIndentGuidesShown();
+        settings.setUseSoftWraps(false);
+        settings.setIndentGuidesShown(false);
+        refresh(editor.getCaretModel().getOffset());
+    }
+
+    /**
+     * 每次写入一批内容后调用，光标换行或到达刷新间隔时重新分析窗口
+     * @param offset 光标位置
+     */
+    public void afterWrite(int offset) {
+        if (!active) {
+            return;
+        }
+        int line = editor.getDocument().getLineNumber(offset);
+        if (line == lastLine && System.nanoTime() - lastRefreshNanos < TimeUnit.MILLISECONDS.toNanos(REFRESH_INTERVAL_MS)) {
+            return;
+        }
+        refresh(offset);
+    }
+
+    /**
+     * 会话结束或还原：移除窗口着色，恢复原来的高亮器和编辑器设置
+     */
+    public void deactivate() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        for (RangeHighlighter highlighter : highlighters) {
+            highlighter.dispose();
+        }
+        highlighters.clear();
+        attributesCache.clear();
+        if (!editor.isDisposed()) {
+            EditorSettings settings = editor.getSettings();
+            settings.setUseSoftWraps(savedSoftWraps);
+            settings.setIndentGuidesShown(savedIndentGuides);
+            // 重新设置时高亮器会对整个文档做一次词法分析
+            ((EditorEx) editor).setHighlighter(savedHighlighter);
+        }
+        savedHighlighter = null;
+    }
+
+    /**
+     * 重新分析光标所在的窗口：窗口之前的着色保持不变，窗口内（及之后）的着色重新生成，
+     * 保留范围之前的着色被释放
+     */
+    private void refresh(int offset) {
+        Document document = editor.getDocument();
+        lastRefreshNanos = System.nanoTime();
+        lastLine = document.getLineNumber(offset);
+        int start = windowStart(document, offset, windowLines);
+        int end = windowEnd(document, offset, windowLines);
+        RangeHighlighter last;
+        while ((last = highlighters.peekLast()) != null && (!last.isValid() || last.getEndOffset() > start)) {
+            highlighters.pollLast().dispose();
+        }
+        int retainStart = windowStart(document, offset,
+                (int) Math.min(Integer.MAX_VALUE, (long) windowLines * RETAINED_WINDOWS));
+        RangeHighlighter first;
+        while ((first = highlighters.peekFirst()) != null && (!first.isValid() || first.getEndOffset() <= retainStart)) {
+            highlighters.pollFirst().dispose();
+        }
+        if (start >= end) {
+            return;
+        }
+        MarkupModel markupModel = editor.getMarkupModel();
+        lex(lexer, document.getImmutableCharSequence(), start, end, (type, tokenStart, tokenEnd) -> {
+            TextAttributes attributes = attributesCache.computeIfAbsent(type, this::attributesOf);
+            if (!attributes.isEmpty()) {
+                highlighters.add(markupModel.addRangeHighlighter(tokenStart, tokenEnd, HighlighterLayer.SYNTAX,
+                        attributes, HighlighterTargetArea.EXACT_RANGE));
+            }
+        });
+    }
+
+    private TextAttributes attributesOf(IElementType type) {
+        TextAttributes result = new TextAttributes();
+        for (TextAttributesKey key : syntaxHighlighter.getTokenHighlights(type)) {
+            TextAttributes attributes = scheme.getAttributes(key);
+            if (attributes != null) {
+                result = TextAttributes.merge(result, attributes);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从初始词法状态开始分析一段内容
+     * @param lexer 词法分析器
+     * @param text 文档内容
+     * @param start 起点（行首）
+     * @param end 终点
+     * @param sink 接收每个词法单元
+     * @return 词法单元的个数
+     */
+    static int lex(Lexer lexer, CharSequence text, int start, int end, TokenSink sink) {
+        lexer.start(text, start, end, 0);
+        int count = 0;
+        IElementType type;
+        while ((type = lexer.getTokenType()) != null) {
+            sink.token(type, lexer.getTokenStart(), lexer.getTokenEnd());
+            count++;
+            lexer.advance();
+        }
+        return count;
+    }
+
+    /**
+     * 窗口的起点：光标之前第 lines 行的行首
+     */
+    static int windowStart(Document document, int offset, int lines) {
+        if (document.getTextLength() == 0) {
+            return 0;
+        }
+        int line = document.getLineNumber(offset);
+        return document.getLineStartOffset(Math.max(0, line - lines));
+    }
+
+    /**
+     * 窗口的终点：光标之后第 lines 行的行尾
+     */
+    static int windowEnd(Document document, int offset, int lines) {
+        if (document.getTextLength() == 0) {
+            return 0;
+        }
+        int line = document.getLineNumber(offset);
+        return document.getLineEndOffset(Math.min(document.getLineCount() - 1, line + lines));
+    }
+}
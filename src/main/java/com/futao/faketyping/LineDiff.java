@@ -0,0 +1,261 @@
+package com.futao.faketyping;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 按行比较两段文本
+ * 使用 Myers 差异算法的线性空间版本（每次找到最优路径的"中间蛇"后分治），时间 O((N+M)D)，
+ * 额外空间只有两个 O(N+M) 的数组和两个标记变化行的 BitSet。
+ * 比较结果按行给出，再在每一块内部去掉首尾相同的字符，只留下真正需要删除和输入的部分；
+ * 块的边界按 {@link GraphemeIndex} 对齐到两边内容的字素簇边界。
+ */
+final class LineDiff {
+    private final CharSequence source;
+    private final CharSequence target;
+    private final int[] sourceLines;
+    private final int[] targetLines;
+    private final int[] sourceHashes;
+    private final int[] targetHashes;
+    private final int sourceLineCount;
+    private final int targetLineCount;
+    // 被删除的原始行、新输入的目标行
+    private final BitSet deletedLines = new BitSet();
+    private final BitSet insertedLines = new BitSet();
+    // 正向和反向搜索在每条对角线上到达的最远位置
+    private int[] forward;
+    private int[] backward;
+
+    private LineDiff(CharSequence source, CharSequence target) {
+        this.source = source;
+        this.target = target;
+        this.sourceLines = lineStarts(source);
+        this.targetLines = lineStarts(target);
+        this.sourceLineCount = sourceLines.length - 1;
+        this.targetLineCount = targetLines.length - 1;
+        this.sourceHashes = lineHashes(source, sourceLines);
+        this.targetHashes = lineHashes(target, targetLines);
+    }
+
+    /**
+     * 比较两段文本，把每一块差异交给接收者
+     * @param source 原始文本
+     * @param target 目标文本
+     * @param consumer 差异块接收者，按位置顺序调用
+     */
+    static void compare(CharSequence source, CharSequence target, HunkConsumer consumer) {
+        LineDiff diff = new LineDiff(source, target);
+        int size = 2 * (diff.sourceLineCount + diff.targetLineCount) + 3;
+        diff.forward = new int[size];
+        diff.backward = new int[size];
+        diff.compareLines(0, diff.sourceLineCount, 0, diff.targetLineCount);
+        diff.forward = null;
+        diff.backward = null;
+        diff.emitHunks(consumer);
+    }
+
+    /**
+     * 差异块接收者
+     */
+    interface HunkConsumer {
+        /**
+         * 把原始文本的 [sourceStart, sourceEnd) 替换为目标文本的 [targetStart, targetEnd)
+         */
+        void accept(int sourceStart, int sourceEnd, int targetStart, int targetEnd);
+    }
+
+    /**
+     * 递归比较原始文本的 [aLow, aHigh) 行与目标文本的 [bLow, bHigh) 行
+     */
+    private void compareLines(int aLow, int aHigh, int bLow, int bHigh) {
+        // 去掉相同的开头和结尾
+        while (aLow < aHigh && bLow < bHigh && linesEqual(aLow, bLow)) {
+            aLow++;
+            bLow++;
+        }
+        while (aLow < aHigh && bLow < bHigh && linesEqual(aHigh - 1, bHigh - 1)) {
+            aHigh--;
+            bHigh--;
+        }
+        if (aLow == aHigh) {
+            insertedLines.set(bLow, bHigh);
+        } else if (bLow == bHigh) {
+            deletedLines.set(aLow, aHigh);
+        } else {
+            // 开头和结尾都不相同时编辑距离至少为2，中间点两侧的子问题都严格变小
+            long split = middleSnake(aLow, aHigh, bLow, bHigh);
+            int x = (int) (split >>> 32);
+            int y = (int) split;
+            compareLines(aLow, x, bLow, y);
+            compareLines(x, aHigh, y, bHigh);
+        }
+    }
+
+    /**
+     * 同时从两端搜索，找到最优编辑路径上的一个中间点
+     * @return 中间点，高32位为原始行号，低32位为目标行号
+     */
+    private long middleSnake(int aLow, int aHigh, int bLow, int bHigh) {
+        int n = aHigh - aLow;
+        int m = bHigh - bLow;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int offset = n + m + 1;
+        int maxD = (n + m + 1) / 2;
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        for (int d = 0; d <= maxD; d++) {
+            // 正向：forward[k] 为对角线 k = x - y 上到达的最大 x
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && linesEqual(aLow + x, bLow + y)) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                int reverseK = delta - k;
+                if (odd && reverseK >= -(d - 1) && reverseK <= d - 1 && x + backward[offset + reverseK] >= n) {
+                    return ((long) (aLow + startX) << 32) | (bLow + startY);
+                }
+            }
+            // 反向：在倒序的两段文本上做同样的搜索
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                        ? backward[offset + k + 1]
+                        : backward[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && linesEqual(aHigh - 1 - x, bHigh - 1 - y)) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                int forwardK = delta - k;
+                if (!odd && forwardK >= -d && forwardK <= d && x + forward[offset + forwardK] >= n) {
+                    return ((long) (aHigh - x) << 32) | (bHigh - y);
+                }
+            }
+        }
+        throw new IllegalStateException("middle snake not found");
+    }
+
+    /**
+     * 把标记的变化行合并为差异块，并去掉每块首尾相同的字符
+     */
+    private void emitHunks(HunkConsumer consumer) {
+        GraphemeIndex sourceGraphemes = null;
+        GraphemeIndex targetGraphemes = null;
+        int a = 0;
+        int b = 0;
+        while (a < sourceLineCount || b < targetLineCount) {
+            if (a < sourceLineCount && b < targetLineCount && !deletedLines.get(a) && !insertedLines.get(b)) {
+                a++;
+                b++;
+                continue;
+            }
+            int aStart = a;
+            int bStart = b;
+            while (a < sourceLineCount && deletedLines.get(a)) {
+                a++;
+            }
+            while (b < targetLineCount && insertedLines.get(b)) {
+                b++;
+            }
+            int sourceStart = sourceLines[aStart];
+            int sourceEnd = sourceLines[a];
+            int targetStart = targetLines[bStart];
+            int targetEnd = targetLines[b];
+            if (sourceGraphemes == null) {
+                // 有差异时才建立索引
+                sourceGraphemes = new GraphemeIndex(source);
+                targetGraphemes = new GraphemeIndex(target);
+            }
+            // 去掉相同的开头，不拆开字素簇
+            int prefix = 0;
+            int maxPrefix = Math.min(sourceEnd - sourceStart, targetEnd - targetStart);
+            while (prefix < maxPrefix && source.charAt(sourceStart + prefix) == target.charAt(targetStart + prefix)) {
+                prefix++;
+            }
+            while (prefix > 0 && !(sourceGraphemes.isBoundary(sourceStart + prefix)
+                    && targetGraphemes.isBoundary(targetStart + prefix))) {
+                prefix--;
+            }
+            sourceStart += prefix;
+            targetStart += prefix;
+            // 去掉相同的结尾，不拆开字素簇
+            int suffix = 0;
+            int maxSuffix = Math.min(sourceEnd - sourceStart, targetEnd - targetStart);
+            while (suffix < maxSuffix && source.charAt(sourceEnd - 1 - suffix) == target.charAt(targetEnd - 1 - suffix)) {
+                suffix++;
+            }
+            while (suffix > 0 && !(sourceGraphemes.isBoundary(sourceEnd - suffix)
+                    && targetGraphemes.isBoundary(targetEnd - suffix))) {
+                suffix--;
+            }
+            sourceEnd -= suffix;
+            targetEnd -= suffix;
+            if (sourceStart < sourceEnd || targetStart < targetEnd) {
+                consumer.accept(sourceStart, sourceEnd, targetStart, targetEnd);
+            }
+        }
+    }
+
+    private boolean linesEqual(int a, int b) {
+        if (sourceHashes[a] != targetHashes[b]) {
+            return false;
+        }
+        int aStart = sourceLines[a];
+        int bStart = targetLines[b];
+        int length = sourceLines[a + 1] - aStart;
+        if (length != targetLines[b + 1] - bStart) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(aStart + i) != target.charAt(bStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算每行的开始位置，最后一个元素为文本长度；每行包含结尾的换行符
+     */
+    private static int[] lineStarts(CharSequence text) {
+        int length = text.length();
+        int[] starts = new int[16];
+        int count = 0;
+        starts[count++] = 0;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n' && i + 1 < length) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count + (count >> 1) + 1);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        if (length == 0) {
+            // 空文本没有行
+            return new int[]{0};
+        }
+        starts = Arrays.copyOf(starts, count + 1);
+        starts[count] = length;
+        return starts;
+    }
+
+    private static int[] lineHashes(CharSequence text, int[] lineStarts) {
+        int[] hashes = new int[lineStarts.length - 1];
+        for (int line = 0; line < hashes.length; line++) {
+            int hash = 0;
+            for (int i = lineStarts[line]; i < lineStarts[line + 1]; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            hashes[line] = hash;
+        }
+        return hashes;
+    }
+}
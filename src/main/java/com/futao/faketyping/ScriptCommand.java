@@ -0,0 +1,122 @@
+package com.futao.faketyping;
+
+/**
+ * 打字脚本中的一条命令（不可变）
+ * 行号和列号从1开始；列号为0表示没有指定列
+ */
+public final class ScriptCommand {
+
+    /**
+     * 命令类型
+     */
+    public enum Kind {
+        // 打开（不存在时创建）文件，之后的命令作用于该文件
+        OPEN,
+        // 移动光标到指定行列
+        GOTO,
+        // 移动光标到文件末尾
+        END,
+        // 在光标处输入一段内容
+        TYPE,
+        // 删除一段内容
+        DELETE,
+        // 停顿
+        PAUSE,
+        // 修改之后的打字速度
+        SPEED,
+        // 保存当前文件
+        SAVE
+    }
+
+    private final Kind kind;
+    // 命令在脚本中的行号，用于报告错误
+    private final int scriptLine;
+    private final String text;
+    private final int line;
+    private final int column;
+    private final int endLine;
+    private final int endColumn;
+    private final long value;
+
+    private ScriptCommand(Kind kind, int scriptLine, String text, int line, int column, int endLine, int endColumn,
+                          long value) {
+        this.kind = kind;
+        this.scriptLine = scriptLine;
+        this.text = text;
+        this.line = line;
+        this.column = column;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+        this.value = value;
+    }
+
+    static ScriptCommand open(int scriptLine, String path) {
+        return new ScriptCommand(Kind.OPEN, scriptLine, path, 0, 0, 0, 0, 0);
+    }
+
+    static ScriptCommand moveTo(int scriptLine, int line, int column) {
+        return new ScriptCommand(Kind.GOTO, scriptLine, null, line, column, 0, 0, 0);
+    }
+
+    static ScriptCommand moveToEnd(int scriptLine) {
+        return new ScriptCommand(Kind.END, scriptLine, null, 0, 0, 0, 0, 0);
+    }
+
+    static ScriptCommand type(int scriptLine, String text) {
+        return new ScriptCommand(Kind.TYPE, scriptLine, text, 0, 0, 0, 0, 0);
+    }
+
+    static ScriptCommand delete(int scriptLine, int line, int column, int endLine, int endColumn) {
+        return new ScriptCommand(Kind.DELETE, scriptLine, null, line, column, endLine, endColumn, 0);
+    }
+
+    static ScriptCommand pause(int scriptLine, long millis) {
+        return new ScriptCommand(Kind.PAUSE, scriptLine, null, 0, 0, 0, 0, millis);
+    }
+
+    static ScriptCommand speed(int scriptLine, int typingSpeed) {
+        return new ScriptCommand(Kind.SPEED, scriptLine, null, 0, 0, 0, 0, typingSpeed);
+    }
+
+    static ScriptCommand save(int scriptLine) {
+        return new ScriptCommand(Kind.SAVE, scriptLine, null, 0, 0, 0, 0, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getScriptLine() {
+        return scriptLine;
+    }
+
+    /**
+     * OPEN 的文件路径，TYPE 输入的内容
+     */
+    public String getText() {
+        return text;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    /**
+     * PAUSE 的毫秒数，SPEED 的打字速度（毫秒/字符）
+     */
+    public long getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,394 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.IntSupplier;
+
+/**
+ * 打字会话的崩溃保护日志
+ * 会话开始时在 IDE 系统目录的 fakeTyping 子目录下写入一次文件头（文件路径、随机种子、内容哈希和原始内容），
+ * 之后按固定间隔在文件末尾追加8字节的检查点（当前按键位置），不会随每个字符重写文件。
+ * 会话完成或被还原时删除日志；IDE 关闭或崩溃时日志保留下来，重启后由 {@link SessionJournalStartup} 提示继续或还原。
+ * 所有文件读写都在一个单线程执行器上按顺序进行，不占用EDT和帧线程。
+ */
+public final class SessionJournal {
+    private static final Logger LOG = Logger.getInstance(SessionJournal.class);
+    // 文件头标记，格式变化时修改
+    private static final int MAGIC = 0x46544A31;
+    // 日志文件扩展名
+    static final String EXTENSION = ".ftj";
+    // 检查点间隔（毫秒）
+    public static final int CHECKPOINT_INTERVAL_MS = 1000;
+    // 内容的存储方式：与原始内容相同、空、单独存储
+    private static final byte CONTENT_SAME_AS_ORIGINAL = 0;
+    private static final byte CONTENT_EMPTY = 1;
+    private static final byte CONTENT_STORED = 2;
+
+    // 所有日志共用的顺序执行器，保证文件头先于检查点写入
+    private static final ExecutorService IO_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("FakeTyping Journal", 1);
+
+    private final File file;
+    private final IntSupplier position;
+    private FileChannel channel;
+    private ScheduledFuture<?> checkpointFuture;
+    private int lastPosition = -1;
+    private volatile boolean closed = false;
+
+    private SessionJournal(File file, IntSupplier position) {
+        this.file = file;
+        this.position = position;
+    }
+
+    /**
+     * 为会话创建日志并开始定时写入检查点
+     * @param filePath 会话所在文件的路径
+     * @param projectPath 会话所在项目的路径，重启后只在该项目中提示
+     * @param seed 随机种子
+     * @param typingSpeed 打字速度（毫秒/字符）
+     * @param original 会话开始前文档的内容（不可变快照）
+     * @param initial 会话开始时文档被设置成的内容（不可变快照）
+     * @param target 打字完成后文档的内容（不可变快照）
+     * @param position 当前按键位置
+     * @return 日志
+     */
+    public static SessionJournal start(String filePath, @Nullable String projectPath, long seed, int typingSpeed,
+                                       CharSequence original, CharSequence initial, CharSequence target,
+                                       IntSupplier position) {
+        File file = new File(getDirectory(), System.currentTimeMillis() + "-" + System.nanoTime() + EXTENSION);
+        SessionJournal journal = new SessionJournal(file, position);
+        IO_EXECUTOR.execute(() -> journal.writeHeader(filePath, projectPath == null ? "" : projectPath, seed,
+                typingSpeed, original, initial, target));
+        journal.checkpointFuture = TypingScheduler.getInstance().scheduleRepeating(journal::checkpoint,
+                CHECKPOINT_INTERVAL_MS);
+        return journal;
+    }
+
+    /**
+     * 日志所在目录
+     */
+    public static File getDirectory() {
+        return new File(PathManager.getSystemPath(), "fakeTyping");
+    }
+
+    /**
+     * 结束日志
+     * @param keep true 表示会话被中断（IDE 或项目关闭），写入最后一个检查点并保留日志；false 表示删除日志
+     */
+    public void close(boolean keep) {
+        if (closed) {
+            return;
+        }
+        if (keep) {
+            checkpoint();
+        }
+        closed = true;
+        checkpointFuture.cancel(false);
+        IO_EXECUTOR.execute(() -> {
+            closeChannel();
+            if (!keep) {
+                delete(file);
+            }
+        });
+    }
+
+    /**
+     * 位置有变化时追加一个检查点
+     */
+    private void checkpoint() {
+        if (closed) {
+            return;
+        }
+        int current = position.getAsInt();
+        if (current == lastPosition) {
+            return;
+        }
+        lastPosition = current;
+        IO_EXECUTOR.execute(() -> writeCheckpoint(current));
+    }
+
+    private void writeHeader(String filePath, String projectPath, long seed, int typingSpeed,
+                             CharSequence original, CharSequence initial, CharSequence target) {
+        try {
+            File directory = file.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("无法创建目录 " + directory);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                writeHeader(out, filePath, projectPath, seed, typingSpeed, original, initial, target);
+            }
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // 写入失败只影响崩溃保护，不影响打字
+            LOG.warn("FakeTyping journal could not be written: " + file, e);
+            closeChannel();
+            delete(file);
+        }
+    }
+
+    private void writeCheckpoint(int current) {
+        if (channel == null) {
+            return;
+        }
+        ByteBuffer record = checkpointRecord(current);
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            LOG.warn("FakeTyping checkpoint could not be written: " + file, e);
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 已经不再需要该文件
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * 写入文件头：标记、文件路径、项目路径、随机种子、打字速度和三份内容
+     */
+    static void writeHeader(DataOutputStream out, String filePath, String projectPath, long seed, int typingSpeed,
+                            CharSequence original, CharSequence initial, CharSequence target) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(filePath);
+        out.writeUTF(projectPath);
+        out.writeLong(seed);
+        out.writeInt(typingSpeed);
+        writeContent(out, original);
+        writeContent(out, initial, original);
+        writeContent(out, target, original);
+    }
+
+    /**
+     * 一个检查点：位置和它的反码一起写入，读取时可以识别写了一半的检查点
+     */
+    static ByteBuffer checkpointRecord(int position) {
+        ByteBuffer record = ByteBuffer.allocate(8).putInt(position).putInt(~position);
+        record.flip();
+        return record;
+    }
+
+    private static void writeContent(DataOutputStream out, CharSequence content, CharSequence original)
+            throws IOException {
+        if (content.length() == 0) {
+            out.writeByte(CONTENT_EMPTY);
+        } else if (content == original || StringUtil.equals(content, original)) {
+            out.writeByte(CONTENT_SAME_AS_ORIGINAL);
+        } else {
+            out.writeByte(CONTENT_STORED);
+            writeContent(out, content);
+        }
+    }
+
+    /**
+     * 写入内容：字符数、哈希和UTF-8字节，读取时用哈希校验内容是否完整
+     */
+    private static void writeContent(DataOutputStream out, CharSequence content) throws IOException {
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(StringUtil.stringHashCode(content));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 读取日志目录中属于指定项目的所有日志，无法读取或已损坏的日志会被删除
+     * @param projectPath 项目路径
+     * @return 日志内容
+     */
+    public static List<Entry> readAll(@Nullable String projectPath) {
+        return readAll(getDirectory(), projectPath);
+    }
+
+    /**
+     * 读取指定目录中属于指定项目的所有日志
+     */
+    static List<Entry> readAll(File directory, @Nullable String projectPath) {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return entries;
+        }
+        String expected = projectPath == null ? "" : projectPath;
+        for (File file : files) {
+            try {
+                Entry entry = read(file, expected);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            } catch (IOException e) {
+                LOG.info("Discarding unreadable FakeTyping journal " + file, e);
+                delete(file);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 读取一个日志，不属于指定项目时返回null
+     */
+    @Nullable
+    private static Entry read(File file, String projectPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是FakeTyping日志");
+            }
+            String filePath = in.readUTF();
+            if (!projectPath.equals(in.readUTF())) {
+                return null;
+            }
+            long seed = in.readLong();
+            int typingSpeed = in.readInt();
+            String original = readContent(in);
+            String initial = readContent(in, original);
+            String target = readContent(in, original);
+            // 最后一个完整的检查点
+            int position = 0;
+            try {
+                while (true) {
+                    int value = in.readInt();
+                    int check = in.readInt();
+                    if (check != ~value) {
+                        break;
+                    }
+                    position = value;
+                }
+            } catch (EOFException ignored) {
+                // 检查点读取完毕，或最后一个检查点只写了一半
+            }
+            return new Entry(file, filePath, seed, typingSpeed, original, initial, target, position);
+        }
+    }
+
+    private static String readContent(DataInputStream in, String original) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case CONTENT_SAME_AS_ORIGINAL:
+                return original;
+            case CONTENT_EMPTY:
+                return "";
+            case CONTENT_STORED:
+                return readContent(in);
+            default:
+                throw new IOException("内容格式错误");
+        }
+    }
+
+    private static String readContent(DataInputStream in) throws IOException {
+        int hash = in.readInt();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        String content = new String(bytes, StandardCharsets.UTF_8);
+        if (StringUtil.stringHashCode(content) != hash) {
+            throw new IOException("内容哈希不一致");
+        }
+        return content;
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOG.warn("FakeTyping journal could not be deleted: " + file);
+        }
+    }
+
+    /**
+     * 重启后读取到的被中断的会话
+     */
+    public static final class Entry {
+        private final File file;
+        private final String filePath;
+        private final long seed;
+        private final int typingSpeed;
+        private final String originalContent;
+        private final String initialContent;
+        private final String targetContent;
+        private final int position;
+
+        private Entry(File file, String filePath, long seed, int typingSpeed, String originalContent,
+                      String initialContent, String targetContent, int position) {
+            this.file = file;
+            this.filePath = filePath;
+            this.seed = seed;
+            this.typingSpeed = typingSpeed;
+            this.originalContent = originalContent;
+            this.initialContent = initialContent;
+            this.targetContent = targetContent;
+            this.position = position;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getTypingSpeed() {
+            return typingSpeed;
+        }
+
+        /**
+         * 会话开始前文档的内容
+         */
+        public String getOriginalContent() {
+            return originalContent;
+        }
+
+        /**
+         * 会话开始时文档被设置成的内容
+         */
+        public String getInitialContent() {
+            return initialContent;
+        }
+
+        /**
+         * 打字完成后文档的内容
+         */
+        public String getTargetContent() {
+            return targetContent;
+        }
+
+        /**
+         * 最后一个检查点的按键位置
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * 处理完毕后删除日志
+         */
+        public void discard() {
+            IO_EXECUTOR.execute(() -> delete(file));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.futao.faketyping;
+
+import java.util.SplittableRandom;
+
+/**
+ * 打字节奏模型
+ * 计算每个输出单元输入之后到下一个单元之前的延迟。只在会话开始计算时间线时调用，不在打字过程中调用。
+ */
+public interface TimingModel {
+    // 选中整块内容再删除所需的时间，按输入多少个字符计算
+    int SELECTION_DELETE_WEIGHT = 10;
+
+    /**
+     * 计算输出单元之后的延迟
+     * @param text 需要输入的内容
+     * @param start 单元开始位置
+     * @param end 单元结束位置（不包含）
+     * @param weight 单元权重，0表示下一个单元立即输入
+     * @return 延迟（毫秒）
+     */
+    int unitDelay(CharSequence text, int start, int end, int weight);
+
+    /**
+     * 计算删除一段内容之后的延迟
+     * @param text 原有内容
+     * @param start 删除开始位置
+     * @param end 删除结束位置（不包含）
+     * @param selection true表示选中整块后一次删除，false表示退格删除一个字素簇
+     * @return 延迟（毫秒）
+     */
+    int deleteDelay(CharSequence text, int start, int end, boolean selection);
+
+    /**
+     * 根据会话配置创建节奏模型
+     * @param config 会话配置
+     * @param random 会话独享的随机数生成器
+     * @return 节奏模型
+     */
+    static TimingModel create(TypingConfig config, SplittableRandom random) {
+        if (config.getTimingModel() == FakeTypingSettings.TimingModelType.HUMAN) {
+            return new HumanTimingModel(config, random);
+        }
+        return new UniformTimingModel(config, random);
+    }
+}
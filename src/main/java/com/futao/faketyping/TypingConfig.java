@@ -0,0 +1,272 @@
+package com.futao.faketyping;
+
+/**
+ * 打字会话的配置（不可变）
+ * 会话开始时从设置中复制一份，会话运行期间不再读取持久化设置，多个会话之间互不影响
+ */
+public final class TypingConfig {
+    private final int typingSpeed;
+    private final int maxTypingSpeed;
+    private final boolean randomSpeedVariation;
+    private final int randomVariationPercent;
+    private final FakeTypingSettings.UndoMode undoMode;
+    private final int undoChunkSize;
+    private final int scrollSafeZoneLines;
+    private final boolean smoothScroll;
+    private final FakeTypingSettings.TypingGranularity granularity;
+    private final FakeTypingSettings.HighlightThrottle highlightThrottle;
+    private final int highlightIntervalMs;
+    private final String seekMarker;
+    private final FakeTypingSettings.TimingModelType timingModel;
+    private final boolean thinkPauses;
+    private final boolean fixedSeed;
+    private final long seed;
+    private final boolean collectMetrics;
+    private final boolean previewMode;
+    private final int largeFileThresholdKb;
+    private final int highlightWindowLines;
+    private final int frameIntervalMs;
+    private final int maxBatchChars;
+
+    private TypingConfig(int typingSpeed, int maxTypingSpeed, boolean randomSpeedVariation, int randomVariationPercent,
+                         FakeTypingSettings.UndoMode undoMode, int undoChunkSize,
+                         int scrollSafeZoneLines, boolean smoothScroll,
+                         FakeTypingSettings.TypingGranularity granularity,
+                         FakeTypingSettings.HighlightThrottle highlightThrottle, int highlightIntervalMs,
+                         String seekMarker, FakeTypingSettings.TimingModelType timingModel, boolean thinkPauses,
+                         boolean fixedSeed, long seed, boolean collectMetrics, boolean previewMode,
+                         int largeFileThresholdKb, int highlightWindowLines,
+                         int frameIntervalMs, int maxBatchChars) {
+        this.typingSpeed = typingSpeed;
+        this.maxTypingSpeed = maxTypingSpeed;
+        this.randomSpeedVariation = randomSpeedVariation;
+        this.randomVariationPercent = randomVariationPercent;
+        this.undoMode = undoMode;
+        this.undoChunkSize = undoChunkSize;
+        this.scrollSafeZoneLines = scrollSafeZoneLines;
+        this.smoothScroll = smoothScroll;
+        this.granularity = granularity;
+        this.highlightThrottle = highlightThrottle;
+        this.highlightIntervalMs = highlightIntervalMs;
+        this.seekMarker = seekMarker;
+        this.timingModel = timingModel;
+        this.thinkPauses = thinkPauses;
+        this.fixedSeed = fixedSeed;
+        this.seed = seed;
+        this.collectMetrics = collectMetrics;
+        this.previewMode = previewMode;
+        this.largeFileThresholdKb = largeFileThresholdKb;
+        this.highlightWindowLines = highlightWindowLines;
+        this.frameIntervalMs = frameIntervalMs;
+        this.maxBatchChars = maxBatchChars;
+    }
+
+    /**
+     * 校验设置
+     * @param settings 设置
+     * @return 第一个不合法的设置的说明，全部合法时返回null
+     */
+    public static String validate(FakeTypingSettings settings) {
+        if (settings.typingSpeed < 1) {
+            return "默认打字速度必须大于0";
+        }
+        if (settings.minTypingSpeed < 1) {
+            return "最小打字速度必须大于0";
+        }
+        if (settings.maxTypingSpeed < 1) {
+            return "最大打字速度必须大于0";
+        }
+        if (settings.randomVariationPercent < 0 || settings.randomVariationPercent > 100) {
+            return "随机速度变化范围必须在0到100之间";
+        }
+        if (settings.undoChunkSize < 1) {
+            return "撤销合并块大小必须大于0";
+        }
+        if (settings.scrollSafeZoneLines < 0) {
+            return "滚动安全区不能小于0";
+        }
+        // 刷新间隔只在实际使用按间隔刷新时校验，性能预设会覆盖设置中的代码分析方式
+        if (effectiveHighlightThrottle(settings) == FakeTypingSettings.HighlightThrottle.INTERVAL &&
+            settings.highlightIntervalMs < TypingEngine.FRAME_INTERVAL_MS) {
+            return "代码分析刷新间隔不能小于" + TypingEngine.FRAME_INTERVAL_MS + "毫秒";
+        }
+        if (settings.largeFileThresholdKb < 0) {
+            return "大文件阈值不能小于0";
+        }
+        if (settings.highlightWindowLines < 1) {
+            return "大文件着色窗口必须大于0";
+        }
+        if (settings.minTypingSpeed > settings.maxTypingSpeed) {
+            return "最小打字速度不能大于最大打字速度";
+        }
+        if (settings.typingSpeed < settings.minTypingSpeed || settings.typingSpeed > settings.maxTypingSpeed) {
+            return "默认打字速度必须在最小和最大打字速度之间";
+        }
+        return null;
+    }
+
+    /**
+     * 根据当前设置创建配置，选择了性能预设时使用预设的帧间隔、每帧写入量、代码分析方式和输出粒度
+     * 设置文件可能被手工修改，因此所有数值都会被限制在合理范围内
+     * 一般通过 {@link FakeTypingSettings#getConfig()} 获取，设置不变时不会重复创建
+     * @param settings 设置
+     * @param typingSpeed 用户选择的打字速度（毫秒/字符）
+     * @return 配置
+     */
+    public static TypingConfig fromSettings(FakeTypingSettings settings, int typingSpeed) {
+        FakeTypingSettings.PerformanceProfile profile = settings.performanceProfile != null
+                ? settings.performanceProfile : FakeTypingSettings.PerformanceProfile.CUSTOM;
+        FakeTypingSettings.TypingGranularity granularity = profile.getGranularity() != null
+                ? profile.getGranularity() : settings.typingGranularity;
+        FakeTypingSettings.HighlightThrottle highlightThrottle = effectiveHighlightThrottle(settings);
+        return new TypingConfig(
+                // 确保速度值至少为1毫秒
+                Math.max(1, typingSpeed),
+                Math.max(1, settings.maxTypingSpeed),
+                settings.randomSpeedVariation,
+                Math.max(0, Math.min(100, settings.randomVariationPercent)),
+                settings.undoMode != null ? settings.undoMode : FakeTypingSettings.UndoMode.SESSION,
+                Math.max(1, settings.undoChunkSize),
+                Math.max(0, settings.scrollSafeZoneLines),
+                settings.smoothScroll,
+                granularity != null ? granularity : FakeTypingSettings.TypingGranularity.CHAR,
+                highlightThrottle != null ? highlightThrottle : FakeTypingSettings.HighlightThrottle.OFF,
+                Math.max(TypingEngine.FRAME_INTERVAL_MS, settings.highlightIntervalMs),
+                settings.seekMarker != null ? settings.seekMarker.trim() : "",
+                settings.timingModel != null ? settings.timingModel : FakeTypingSettings.TimingModelType.UNIFORM,
+                settings.thinkPauses,
+                settings.fixedSeed,
+                settings.seed,
+                settings.collectMetrics,
+                settings.previewMode,
+                Math.max(0, settings.largeFileThresholdKb),
+                Math.max(1, settings.highlightWindowLines),
+                profile.getFrameIntervalMs(),
+                profile.getMaxBatchChars()
+        );
+    }
+
+    /**
+     * 实际使用的代码分析方式：选择了性能预设时使用预设的方式
+     */
+    private static FakeTypingSettings.HighlightThrottle effectiveHighlightThrottle(FakeTypingSettings settings) {
+        FakeTypingSettings.PerformanceProfile profile = settings.performanceProfile != null
+                ? settings.performanceProfile : FakeTypingSettings.PerformanceProfile.CUSTOM;
+        return profile.getHighlightThrottle() != null ? profile.getHighlightThrottle() : settings.highlightThrottle;
+    }
+
+    /**
+     * 复制一份配置，只修改打字速度（用于会话开始时选择的速度和脚本中的 speed 命令）
+     * @param typingSpeed 打字速度（毫秒/字符）
+     * @return 新的配置
+     */
+    public TypingConfig withTypingSpeed(int typingSpeed) {
+        return new TypingConfig(Math.max(1, typingSpeed), maxTypingSpeed, randomSpeedVariation, randomVariationPercent,
+                undoMode, undoChunkSize, scrollSafeZoneLines, smoothScroll, granularity, highlightThrottle,
+                highlightIntervalMs, seekMarker, timingModel, thinkPauses, fixedSeed, seed, collectMetrics, previewMode,
+                largeFileThresholdKb, highlightWindowLines, frameIntervalMs, maxBatchChars);
+    }
+
+    /**
+     * 复制一份配置，使用固定的随机种子（用于脚本中的每一步，使整个脚本的节奏可以复现）
+     * @param seed 随机种子
+     * @return 新的配置
+     */
+    public TypingConfig withSeed(long seed) {
+        return new TypingConfig(typingSpeed, maxTypingSpeed, randomSpeedVariation, randomVariationPercent,
+                undoMode, undoChunkSize, scrollSafeZoneLines, smoothScroll, granularity, highlightThrottle,
+                highlightIntervalMs, seekMarker, timingModel, thinkPauses, true, seed, collectMetrics, previewMode,
+                largeFileThresholdKb, highlightWindowLines, frameIntervalMs, maxBatchChars);
+    }
+
+    public int getTypingSpeed() {
+        return typingSpeed;
+    }
+
+    public int getMaxTypingSpeed() {
+        return maxTypingSpeed;
+    }
+
+    public boolean isRandomSpeedVariation() {
+        return randomSpeedVariation;
+    }
+
+    public int getRandomVariationPercent() {
+        return randomVariationPercent;
+    }
+
+    public FakeTypingSettings.UndoMode getUndoMode() {
+        return undoMode;
+    }
+
+    public int getUndoChunkSize() {
+        return undoChunkSize;
+    }
+
+    public int getScrollSafeZoneLines() {
+        return scrollSafeZoneLines;
+    }
+
+    public boolean isSmoothScroll() {
+        return smoothScroll;
+    }
+
+    public FakeTypingSettings.TypingGranularity getGranularity() {
+        return granularity;
+    }
+
+    public FakeTypingSettings.HighlightThrottle getHighlightThrottle() {
+        return highlightThrottle;
+    }
+
+    public int getHighlightIntervalMs() {
+        return highlightIntervalMs;
+    }
+
+    public String getSeekMarker() {
+        return seekMarker;
+    }
+
+    public FakeTypingSettings.TimingModelType getTimingModel() {
+        return timingModel;
+    }
+
+    public boolean isThinkPauses() {
+        return thinkPauses;
+    }
+
+    public boolean isFixedSeed() {
+        return fixedSeed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isCollectMetrics() {
+        return collectMetrics;
+    }
+
+    public boolean isPreviewMode() {
+        return previewMode;
+    }
+
+    public int getLargeFileThresholdKb() {
+        return largeFileThresholdKb;
+    }
+
+    public int getHighlightWindowLines() {
+        return highlightWindowLines;
+    }
+
+    public int getFrameIntervalMs() {
+        return frameIntervalMs;
+    }
+
+    /**
+     * 每帧最多写入的字符数，0表示不限制
+     */
+    public int getMaxBatchChars() {
+        return maxBatchChars;
+    }
+}
@@ -0,0 +1,195 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopup;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.JBPopupListener;
+import com.intellij.openapi.ui.popup.LightweightWindowEvent;
+import com.intellij.ui.awt.RelativePoint;
+import com.intellij.ui.components.JBLabel;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * 打字会话或打字脚本的悬浮控制面板
+ * 提供暂停/继续、还原、跳转到行、跳到下一个标记、快进，并实时显示进度
+ */
+public class TypingControlPanel {
+    // 快进倍速，依次循环
+    private static final int[] PLAYBACK_RATES = {1, 2, 4, 8, 16};
+    // 进度刷新间隔（毫秒）
+    private static final int PROGRESS_REFRESH_MS = 200;
+
+    private final TypingPlayback session;
+    private final JLabel progressLabel = new JLabel();
+    // 性能指标，未开启指标收集时不显示
+    private final JLabel metricsLabel = new JLabel();
+    private int rateIndex = 0;
+
+    private TypingControlPanel(TypingPlayback session) {
+        this.session = session;
+    }
+
+    /**
+     * 为会话创建并显示控制面板
+     * @param session 控制面板对应的打字会话或打字脚本
+     */
+    public static void show(TypingPlayback session) {
+        new TypingControlPanel(session).createPopup();
+    }
+
+    private void createPopup() {
+        Editor editor = session.getEditor();
+
+        // 暂停/继续按钮
+        JButton pauseResumeButton = new JButton("暂停");
+        pauseResumeButton.setToolTipText("暂停/继续打字效果");
+
+        // 还原按钮
+        JButton restoreButton = new JButton("还原");
+        restoreButton.setToolTipText("还原文件原始内容");
+
+        // 跳转按钮
+        JButton jumpToLineButton = new JButton("跳到行");
+        jumpToLineButton.setToolTipText("一次性输入指定行之前的内容，从该行继续");
+        JButton nextMarkerButton = new JButton("下一标记");
+        nextMarkerButton.setToolTipText("跳到下一个包含标记 \"" + session.getConfig().getSeekMarker() + "\" 的行");
+        JButton fastForwardButton = new JButton("快进 ×1");
+        fastForwardButton.setToolTipText("切换播放倍速");
+
+        // 添加按钮到面板
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
+        buttonPanel.add(pauseResumeButton);
+        buttonPanel.add(restoreButton);
+        buttonPanel.add(jumpToLineButton);
+        buttonPanel.add(nextMarkerButton);
+        buttonPanel.add(fastForwardButton);
+
+        // 创建悬浮控制面板
+        JPanel controlPanel = new JPanel(new BorderLayout(0, 5));
+        controlPanel.add(buttonPanel, BorderLayout.CENTER);
+        progressLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        metricsLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        JPanel statusPanel = new JPanel(new GridLayout(0, 1, 0, 2));
+        statusPanel.add(progressLabel);
+        statusPanel.add(metricsLabel);
+        metricsLabel.setVisible(session.getConfig().isCollectMetrics());
+        controlPanel.add(statusPanel, BorderLayout.SOUTH);
+        // 显示随机种子，在设置中固定该种子即可复现相同的打字节奏
+        JBLabel seedLabel = new JBLabel("随机种子 " + session.getSeed());
+        seedLabel.setCopyable(true);
+        seedLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        seedLabel.setToolTipText("在设置中固定该种子即可复现相同的打字节奏");
+        seedLabel.setVisible(session.hasSeed());
+        controlPanel.add(seedLabel, BorderLayout.NORTH);
+        refreshProgress();
+
+        // 显示控制面板
+        JBPopup popup = JBPopupFactory.getInstance()
+                .createComponentPopupBuilder(controlPanel, pauseResumeButton)
+                .setTitle(session.getTitle())
+                .setMovable(true)
+                .setRequestFocus(false)
+                .setCancelOnClickOutside(false)
+                .setCancelOnWindowDeactivation(false)
+                .createPopup();
+
+        if (editor != null) {
+            popup.show(new RelativePoint(
+                    editor.getComponent(),
+                    new Point(Math.max(0, editor.getComponent().getWidth() - 360), 10)
+            ));
+        } else {
+            // 脚本还没有打开文件时显示在窗口中央
+            popup.showCenteredInCurrentWindow(session.getProject());
+        }
+
+        // 定时刷新进度，面板关闭后停止
+        Timer progressTimer = new Timer(PROGRESS_REFRESH_MS, e -> refreshProgress());
+        progressTimer.start();
+        popup.addListener(new JBPopupListener() {
+            @Override
+            public void onClosed(@NotNull LightweightWindowEvent event) {
+                progressTimer.stop();
+            }
+        });
+
+        // 暂停/继续按钮点击事件
+        pauseResumeButton.addActionListener(e -> {
+            if (session.isPaused()) {
+                // 继续执行，从当前位置继续打字
+                pauseResumeButton.setText("暂停");
+                session.resume();
+            } else {
+                // 暂停执行
+                pauseResumeButton.setText("继续");
+                session.pause();
+            }
+        });
+
+        // 还原按钮点击事件
+        restoreButton.addActionListener(e -> {
+            // 还原会话（已经结束的会话不再重复还原）
+            if (!session.isEnded()) {
+                session.restore();
+            }
+
+            // 关闭悬浮弹窗
+            popup.cancel();
+        });
+
+        // 跳转到行按钮点击事件
+        jumpToLineButton.addActionListener(e -> {
+            String input = Messages.showInputDialog(session.getProject(),
+                    "跳转到第几行（之前的内容会一次性输入）", "FakeTyping跳转", null);
+            if (input == null || input.isBlank()) {
+                return;
+            }
+            try {
+                if (!session.seekToLine(Integer.parseInt(input.trim()))) {
+                    Messages.showWarningDialog("行号超出范围或打字已结束。", "FakeTyping警告");
+                }
+            } catch (NumberFormatException ex) {
+                Messages.showWarningDialog("请输入有效的行号。", "FakeTyping警告");
+            }
+            refreshProgress();
+        });
+
+        // 下一标记按钮点击事件
+        nextMarkerButton.addActionListener(e -> {
+            if (!session.seekToNextMarker()) {
+                Messages.showInfoMessage("后面没有更多标记了。", "FakeTyping");
+            }
+            refreshProgress();
+        });
+
+        // 快进按钮点击事件：在各个倍速之间循环切换
+        fastForwardButton.addActionListener(e -> {
+            rateIndex = (rateIndex + 1) % PLAYBACK_RATES.length;
+            session.setPlaybackRate(PLAYBACK_RATES[rateIndex]);
+            fastForwardButton.setText("快进 ×" + PLAYBACK_RATES[rateIndex]);
+        });
+    }
+
+    /**
+     * 刷新进度显示：已删除和输入的字符数、百分比和当前行
+     */
+    private void refreshProgress() {
+        int typed = session.getTypedLength();
+        int total = session.getContentLength();
+        Editor editor = session.getEditor();
+        int line = 0;
+        if (editor != null) {
+            Document document = editor.getDocument();
+            line = document.getLineNumber(Math.min(session.getCaretOffset(), document.getTextLength())) + 1;
+        }
+        String state = session.isEnded() ? "（已结束）" : session.isPaused() ? "（已暂停）" : "";
+        progressLabel.setText(String.format("%s进度 %d/%d 字符（%.1f%%），第 %d 行%s", session.getStepDescription(),
+                typed, total, total > 0 ? typed * 100.0 / total : 100.0, line, state));
+        metricsLabel.setText(session.getMetricsSummary());
+    }
+}
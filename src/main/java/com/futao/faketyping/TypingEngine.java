@@ -0,0 +1,367 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按帧合并的打字引擎
+ * 每一帧（约16毫秒）收集这一帧内到期的所有输出单元，只用一次写命令插入，并只移动一次光标。
+ * 无论配置的打字速度多快，每秒写命令的次数都不会超过帧率。
+ * 帧任务运行在共享的 {@link TypingScheduler} 上，写命令提交到EDT执行，不会阻塞调度线程。
+ * 文档修改由 {@link EditScript} 描述（完整重新输入或只输入差异），每个单元的目标时间来自预先计算的 {@link TypingTimeline}，相对会话开始时间（基于 {@link System#nanoTime()}）计算，
+ * 调度延迟不会累积，落后时在下一帧一次性补齐，实际总时长与设定速度一致。
+ * 每个会话最多只有一个尚未执行完的写命令：EDT繁忙（索引、GC等）时帧任务不再提交新的写命令，
+ * 等上一批完成后再把期间到期的单元合并为一批写入，不会在EDT队列中堆积写命令后集中爆发。
+ */
+public class TypingEngine {
+    // 默认帧间隔（毫秒），约60帧/秒，同时也是写命令频率的上限；性能预设可以使用更长的帧间隔
+    public static final int FRAME_INTERVAL_MS = 16;
+    // 往返时间指数加权平均的系数，越大对最近的写命令越敏感
+    private static final double ROUND_TRIP_SMOOTHING = 0.25;
+
+    private final long sessionId;
+    private final Project project;
+    private final Document document;
+    // 编辑脚本，会话结束后释放
+    private volatile EditScript script;
+    private final int streamLength;
+    private final TypingTimeline timeline;
+    private final TypingUndoGroup undoGroup;
+    private final HighlightingThrottle highlightingThrottle;
+    private final LargeFileHighlighter largeFileHighlighter;
+    private final ViewportFollower follower;
+    private final Runnable onComplete;
+    private final int frameIntervalMs;
+    // 每帧最多写入的字符数，0表示不限制
+    private final int maxBatchChars;
+    // 性能指标，未开启时为null
+    private final TypingMetrics metrics;
+    // 已提交到EDT但尚未执行完的写命令数，帧任务只在为0时提交新的写命令（跳转时可能暂时多于一个）
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    // 写命令从提交到执行完成的往返时间（纳秒），指数加权平均，EDT上更新，帧线程读取
+    private volatile double writeRoundTripNanos = 0;
+
+    // 下一个要输入的单元
+    private int nextUnit = 0;
+    // 当前按键位置，即已删除和已输入的字符总数，检查点线程会读取
+    private volatile int position = 0;
+    // 会话开始的时间点，暂停期间的时长会被顺延，因此始终表示"扣除暂停后的起点"
+    private long startNanos;
+    // 开始暂停的时间点
+    private long pausedAtNanos;
+    // 最后一批字符实际写入的时间点
+    private long finishedNanos;
+    // 播放倍速，快进时大于1
+    private double playbackRate = 1;
+    private boolean started = false;
+    private volatile boolean running = false;
+    // 会话被还原或取消后为true，尚未执行的写入将被丢弃
+    private volatile boolean stopped = false;
+
+    /**
+     * 构造函数
+     * @param sessionId 会话在调度服务中的ID
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param script 编辑脚本（引用不可变快照，不会复制内容）
+     * @param timeline 预先计算的时间线
+     * @param config 会话配置
+     * @param undoGroup 撤销分组
+     * @param highlightingThrottle 代码分析节流
+     * @param largeFileHighlighter 大文件的窗口着色
+     * @param onComplete 全部内容输入完成后的回调（在EDT上执行）
+     */
+    public TypingEngine(long sessionId, Project project, Editor editor, EditScript script, TypingTimeline timeline,
+                        TypingConfig config, TypingUndoGroup undoGroup, HighlightingThrottle highlightingThrottle,
+                        LargeFileHighlighter largeFileHighlighter, Runnable onComplete) {
+        this.sessionId = sessionId;
+        this.project = project;
+        this.document = editor.getDocument();
+        this.script = script;
+        this.streamLength = script.getStreamLength();
+        this.timeline = timeline;
+        this.undoGroup = undoGroup;
+        this.highlightingThrottle = highlightingThrottle;
+        this.largeFileHighlighter = largeFileHighlighter;
+        this.follower = new ViewportFollower(editor, config);
+        this.onComplete = onComplete;
+        this.frameIntervalMs = config.getFrameIntervalMs();
+        this.maxBatchChars = config.getMaxBatchChars();
+        this.metrics = config.isCollectMetrics() ? new TypingMetrics(frameIntervalMs) : null;
+    }
+
+    /**
+     * 开始或继续打字，从当前位置继续输入
+     */
+    public synchronized void start() {
+        if (running || stopped || isFinished()) {
+            return;
+        }
+        running = true;
+        long now = System.nanoTime();
+        if (started) {
+            // 继续时把起点顺延暂停的时长，后续单元的目标时间随之顺延
+            startNanos += now - pausedAtNanos;
+        } else {
+            started = true;
+            startNanos = now;
+        }
+        if (metrics != null) {
+            metrics.onStart(now);
+        }
+        TypingScheduler.getInstance().scheduleFrames(sessionId, this::onFrame, frameIntervalMs);
+    }
+
+    /**
+     * 暂停打字，继续时从暂停的位置按原节奏继续
+     */
+    public synchronized void pause() {
+        if (running) {
+            pausedAtNanos = System.nanoTime();
+            if (metrics != null) {
+                metrics.onStop(pausedAtNanos);
+            }
+        }
+        running = false;
+        TypingScheduler.getInstance().pauseFrames(sessionId);
+    }
+
+    /**
+     * 停止打字，尚未执行的写入将被丢弃（用于还原和取消）
+     */
+    public synchronized void stop() {
+        if (running && metrics != null) {
+            metrics.onStop(System.nanoTime());
+        }
+        running = false;
+        stopped = true;
+        TypingScheduler.getInstance().pauseFrames(sessionId);
+        script = null;
+    }
+
+    /**
+     * 跳转到时间线上的指定单元：向后跳转时一次性完成中间的修改，向前跳转时一次性撤销多出的修改，
+     * 之后从该单元开始按原节奏继续
+     * @param unit 跳转后下一个要输入的单元
+     */
+    public synchronized void seekToUnit(int unit) {
+        if (stopped || !started || script == null) {
+            return;
+        }
+        unit = Math.max(0, Math.min(timeline.getUnitCount(), unit));
+        if (unit == nextUnit) {
+            return;
+        }
+        // 调整起点，使刚输入完成的单元的目标时间恰好是现在
+        long unitTimeNanos = TimeUnit.MILLISECONDS.toNanos(unit > 0 ? timeline.unitTime(unit - 1) : 0);
+        startNanos = (running ? System.nanoTime() : pausedAtNanos) - (long) (unitTimeNanos / playbackRate);
+        moveTo(unit, false);
+    }
+
+    /**
+     * 设置播放倍速，时间线上的当前位置保持不变
+     * @param rate 倍速，1为正常速度
+     */
+    public synchronized void setPlaybackRate(double rate) {
+        if (rate <= 0 || rate == playbackRate) {
+            return;
+        }
+        if (started) {
+            long base = running ? System.nanoTime() : pausedAtNanos;
+            double timelineNanos = (base - startNanos) * playbackRate;
+            startNanos = base - (long) (timelineNanos / rate);
+        }
+        playbackRate = rate;
+    }
+
+    public double getPlaybackRate() {
+        return playbackRate;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFinished() {
+        return position >= streamLength;
+    }
+
+    /**
+     * 编辑脚本，会话结束后返回null
+     */
+    public EditScript getScript() {
+        return script;
+    }
+
+    public TypingTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * 性能指标，未开启时返回null
+     */
+    public TypingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 写命令从提交到EDT执行完成的平均往返时间（毫秒）
+     */
+    public double getWriteRoundTripMs() {
+        return writeRoundTripNanos / 1e6;
+    }
+
+    /**
+     * 下一个要输入的单元
+     */
+    public int getNextUnit() {
+        return nextUnit;
+    }
+
+    /**
+     * 当前按键位置，即已删除和已输入的字符总数
+     */
+    public int getTypedLength() {
+        return position;
+    }
+
+    /**
+     * 需要删除和输入的字符总数
+     */
+    public int getContentLength() {
+        return streamLength;
+    }
+
+    /**
+     * 当前光标在文档中的位置
+     */
+    public int getDocumentOffset() {
+        EditScript script = this.script;
+        return script != null ? script.documentOffset(position) : document.getTextLength();
+    }
+
+    /**
+     * 生成速度报告：实际速度与设定速度（字符/秒）
+     * @return 报告文本
+     */
+    public String speedReport() {
+        double plannedSeconds = timeline.totalTimeMs() / 1e3;
+        double actualSeconds = (finishedNanos - startNanos) / 1e9;
+        int chars = streamLength;
+        return String.format("实际速度 %.1f 字符/秒（设定 %.1f 字符/秒），用时 %.1f 秒（设定 %.1f 秒）",
+                actualSeconds > 0 ? chars / actualSeconds : chars,
+                plannedSeconds > 0 ? chars / plannedSeconds : chars,
+                actualSeconds, plannedSeconds);
+    }
+
+    /**
+     * 每一帧执行一次：沿时间线找出本帧到期的所有单元并一次性插入，落后时一次补齐
+     * 限制了每帧写入量时，一帧最多写入这么多字符（至少一个单元），其余的在后面的帧中补齐；
+     * EDT繁忙、写命令的往返时间超过一帧时，上限按往返时间放大，使平均速度保持不变
+     * 上一批写命令尚未执行完时跳过本帧，到期的单元留到下一次写入
+     */
+    private synchronized void onFrame() {
+        if (!running || script == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (metrics != null) {
+            metrics.onFrame(now);
+        }
+        if (pendingWrites.get() > 0) {
+            if (metrics != null) {
+                metrics.onHeldFrame();
+            }
+            return;
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis((long) ((now - startNanos) * playbackRate));
+        int unitCount = timeline.getUnitCount();
+        int unit = nextUnit;
+        int batchStart = timeline.unitStart(nextUnit);
+        long batchLimit = maxBatchChars == 0 ? Long.MAX_VALUE
+                : (long) (maxBatchChars * Math.max(1, writeRoundTripNanos / TimeUnit.MILLISECONDS.toNanos(frameIntervalMs)));
+        while (unit < unitCount && timeline.unitTime(unit) <= elapsedMs
+                && (unit == nextUnit || timeline.unitStart(unit + 1) - batchStart <= batchLimit)) {
+            unit++;
+        }
+        if (unit != nextUnit) {
+            moveTo(unit, true);
+        }
+    }
+
+    /**
+     * 把文档推进（或回退）到指定单元，提交一次写命令
+     * @param unit 下一个要输入的单元
+     * @param onTime 是否为按时间线到期的写入（跳转不计入性能指标）
+     */
+    private void moveTo(int unit, boolean onTime) {
+        final EditScript script = this.script;
+        final int from = position;
+        final int units = unit - nextUnit;
+        // 这一批中第一个单元的目标时间，用于统计调度延迟
+        final long deadlineNanos = metrics != null && onTime
+                ? startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(timeline.unitTime(nextUnit)) / playbackRate)
+                : 0;
+        final long submitNanos = System.nanoTime();
+        final int to = timeline.unitStart(unit);
+        nextUnit = unit;
+        position = to;
+
+        final boolean finished = unit >= timeline.getUnitCount();
+        if (finished) {
+            // 最后一批已经计算完毕，停止帧任务并释放脚本
+            running = false;
+            TypingScheduler.getInstance().pauseFrames(sessionId);
+            this.script = null;
+        }
+
+        // 一次写命令完成整批修改，只移动一次光标，只在光标离开安全区时滚动视图
+        // 直接插入快照的子序列，每帧只产生少量视图对象，不会按字符分配
+        pendingWrites.incrementAndGet();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            // 无论写命令是否成功都要释放，否则帧任务不会再提交新的写命令
+            try {
+                if (!stopped) {
+                    write(script, from, to, units, onTime, deadlineNanos, submitNanos);
+                }
+            } finally {
+                pendingWrites.decrementAndGet();
+            }
+            if (finished && !stopped) {
+                finishedNanos = System.nanoTime();
+                if (metrics != null) {
+                    metrics.onStop(finishedNanos);
+                }
+                onComplete.run();
+            }
+        }, project.getDisposed());
+    }
+
+    /**
+     * 在EDT上执行一批写入，并更新往返时间
+     */
+    private void write(EditScript script, int from, int to, int units, boolean onTime,
+                       long deadlineNanos, long submitNanos) {
+        long runNanos = metrics != null ? System.nanoTime() : 0;
+        CharSequence[] batch = {""};
+        int caret = script.documentOffset(to);
+        undoGroup.write(Math.abs(to - from), () -> {
+            batch[0] = script.apply(document, from, to);
+            // 移动光标到修改位置，并按需滚动
+            follower.follow(caret);
+        });
+        if (metrics != null && onTime) {
+            metrics.onBatch(deadlineNanos, submitNanos, runNanos, System.nanoTime(), units, Math.abs(to - from));
+        }
+        highlightingThrottle.afterWrite(batch[0]);
+        largeFileHighlighter.afterWrite(caret);
+        long roundTrip = System.nanoTime() - submitNanos;
+        double average = writeRoundTripNanos;
+        writeRoundTripNanos = average == 0 ? roundTrip : average + (roundTrip - average) * ROUND_TRIP_SMOOTHING;
+    }
+}
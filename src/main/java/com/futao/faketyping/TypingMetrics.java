@@ -0,0 +1,244 @@
+package com.futao.faketyping;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打字会话的性能指标
+ * 记录实际速度、调度延迟（单元的目标时间到实际写入完成）、写命令耗时、EDT排队时间，以及丢帧、等待帧和合并帧的数量。
+ * 延迟使用对数分桶的直方图统计分位数，每批写入额外保存一行原始数据用于导出CSV，全部是基本类型数组，不按批分配对象。
+ * 只有在设置中开启时才会创建；关闭时引擎只做一次空判断。
+ * 帧相关的计数只在帧线程上修改，写入相关的数据只在EDT上修改，控制面板读取时允许看到稍旧的值。
+ */
+public final class TypingMetrics {
+    // 最多保存的原始数据行数，超过后只更新直方图
+    private static final int MAX_SAMPLES = 1 << 20;
+    // 每行原始数据的列数：相对开始时间（毫秒）、字符数、单元数、调度延迟、EDT排队、写命令耗时（微秒）
+    private static final int SAMPLE_COLUMNS = 6;
+
+    private final int frameIntervalMs;
+    private final long createdNanos = System.nanoTime();
+    private final Histogram lag = new Histogram();
+    private final Histogram queueDelay = new Histogram();
+    private final Histogram writeDuration = new Histogram();
+    private int[] samples = new int[SAMPLE_COLUMNS * 1024];
+    private int sampleCount = 0;
+
+    // 帧线程：上一帧的时间点和因为调度线程繁忙而错过的帧数
+    private long lastFrameNanos = 0;
+    private long droppedFrames = 0;
+    // 帧线程：上一批写命令尚未执行完而跳过的帧数
+    private long heldFrames = 0;
+    // EDT：写入的批数、一批包含多个单元（落后后补齐）的批数和写入的字符数
+    private long batches = 0;
+    private long mergedFrames = 0;
+    private long chars = 0;
+    // 打字中（扣除暂停）的累计时长和本次开始的时间点
+    private long activeNanos = 0;
+    private long resumedNanos = 0;
+
+    /**
+     * 构造函数
+     * @param frameIntervalMs 帧间隔（毫秒），用于判断丢帧
+     */
+    public TypingMetrics(int frameIntervalMs) {
+        this.frameIntervalMs = frameIntervalMs;
+    }
+
+    /**
+     * 开始或继续打字
+     */
+    public synchronized void onStart(long nowNanos) {
+        if (resumedNanos == 0) {
+            resumedNanos = nowNanos;
+        }
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * 暂停或完成打字
+     */
+    public synchronized void onStop(long nowNanos) {
+        if (resumedNanos != 0) {
+            activeNanos += nowNanos - resumedNanos;
+            resumedNanos = 0;
+        }
+    }
+
+    /**
+     * 每一帧开始时调用（帧线程），两帧之间的间隔超过两个帧间隔时计为丢帧
+     */
+    public void onFrame(long nowNanos) {
+        long last = lastFrameNanos;
+        lastFrameNanos = nowNanos;
+        if (last != 0) {
+            long missed = (nowNanos - last) / TimeUnit.MILLISECONDS.toNanos(frameIntervalMs) - 1;
+            if (missed > 0) {
+                droppedFrames += missed;
+            }
+        }
+    }
+
+    /**
+     * 上一批写命令尚未执行完、本帧不提交写命令时调用（帧线程）
+     */
+    public void onHeldFrame() {
+        heldFrames++;
+    }
+
+    /**
+     * 一批写入完成后调用（EDT）
+     * @param deadlineNanos 这一批中第一个单元的目标时间
+     * @param submitNanos 提交到EDT的时间
+     * @param runNanos 开始在EDT上执行的时间
+     * @param endNanos 写命令完成的时间
+     * @param units 这一批包含的单元数
+     * @param charCount 这一批删除和输入的字符数
+     */
+    public void onBatch(long deadlineNanos, long submitNanos, long runNanos, long endNanos, int units, int charCount) {
+        int lagMicros = toMicros(endNanos - deadlineNanos);
+        int queueMicros = toMicros(runNanos - submitNanos);
+        int writeMicros = toMicros(endNanos - runNanos);
+        lag.record(lagMicros);
+        queueDelay.record(queueMicros);
+        writeDuration.record(writeMicros);
+        batches++;
+        if (units > 1) {
+            mergedFrames++;
+        }
+        chars += charCount;
+        if (sampleCount < MAX_SAMPLES) {
+            int index = sampleCount * SAMPLE_COLUMNS;
+            if (index + SAMPLE_COLUMNS > samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[index] = (int) TimeUnit.NANOSECONDS.toMillis(endNanos - createdNanos);
+            samples[index + 1] = charCount;
+            samples[index + 2] = units;
+            samples[index + 3] = lagMicros;
+            samples[index + 4] = queueMicros;
+            samples[index + 5] = writeMicros;
+            sampleCount++;
+        }
+    }
+
+    /**
+     * 实际速度（字符/秒），只计算打字中的时间
+     */
+    public synchronized double charsPerSecond() {
+        long active = activeNanos + (resumedNanos != 0 ? System.nanoTime() - resumedNanos : 0);
+        return active > 0 ? chars * 1e9 / active : 0;
+    }
+
+    /**
+     * 控制面板中显示的摘要
+     */
+    public String summary() {
+        return String.format("%.1f 字符/秒，延迟 p50 %s / p99 %s，写入 p99 %s，排队 p99 %s，丢帧 %d，等待帧 %d，合并帧 %d",
+                charsPerSecond(), formatMicros(lag.percentile(50)), formatMicros(lag.percentile(99)),
+                formatMicros(writeDuration.percentile(99)), formatMicros(queueDelay.percentile(99)),
+                droppedFrames, heldFrames, mergedFrames);
+    }
+
+    /**
+     * 导出CSV：先是汇总指标，空行之后是每批写入的原始数据
+     * @param writer 输出
+     * @throws IOException 写入失败
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("metric,value\n");
+        writer.write(String.format("chars_per_second,%.2f%n", charsPerSecond()));
+        writer.write("chars," + chars + "\n");
+        writer.write("batches," + batches + "\n");
+        writer.write("merged_frames," + mergedFrames + "\n");
+        writer.write("dropped_frames," + droppedFrames + "\n");
+        writer.write("held_frames," + heldFrames + "\n");
+        writeHistogram(writer, "lag", lag);
+        writeHistogram(writer, "edt_queue", queueDelay);
+        writeHistogram(writer, "write", writeDuration);
+        writer.write("\nelapsed_ms,chars,units,lag_us,edt_queue_us,write_us\n");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < sampleCount; i++) {
+            line.setLength(0);
+            int index = i * SAMPLE_COLUMNS;
+            for (int c = 0; c < SAMPLE_COLUMNS; c++) {
+                if (c > 0) {
+                    line.append(',');
+                }
+                line.append(samples[index + c]);
+            }
+            writer.append(line).append('\n');
+        }
+    }
+
+    private static void writeHistogram(Writer writer, String name, Histogram histogram) throws IOException {
+        writer.write(name + "_p50_us," + histogram.percentile(50) + "\n");
+        writer.write(name + "_p99_us," + histogram.percentile(99) + "\n");
+        writer.write(name + "_max_us," + histogram.max + "\n");
+    }
+
+    private static int toMicros(long nanos) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    private static String formatMicros(int micros) {
+        return micros < 1000 ? micros + "µs" : String.format("%.1fms", micros / 1000.0);
+    }
+
+    /**
+     * 对数分桶的直方图：小于16的值每个值一个桶，之后每个2的幂区间分8个桶，相对误差不超过12.5%
+     */
+    private static final class Histogram {
+        private static final int LINEAR_BUCKETS = 16;
+        private static final int SUB_BUCKETS = 8;
+        private final long[] counts = new long[LINEAR_BUCKETS + (31 - 4) * SUB_BUCKETS];
+        private long total = 0;
+        private int max = 0;
+
+        void record(int value) {
+            counts[bucketOf(value)]++;
+            total++;
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        /**
+         * 分位数，返回所在桶的上界（不超过最大值）
+         */
+        int percentile(double percent) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percent / 100);
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(max, upperBound(bucket));
+                }
+            }
+            return max;
+        }
+
+        private static int bucketOf(int value) {
+            if (value < LINEAR_BUCKETS) {
+                return value;
+            }
+            int exponent = 31 - Integer.numberOfLeadingZeros(value);
+            return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + ((value >>> (exponent - 3)) & (SUB_BUCKETS - 1));
+        }
+
+        private static int upperBound(int bucket) {
+            if (bucket < LINEAR_BUCKETS) {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+            int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+            long bound = (1L << exponent) + ((long) (sub + 1) << (exponent - 3)) - 1;
+            return (int) Math.min(Integer.MAX_VALUE, bound);
+        }
+    }
+}
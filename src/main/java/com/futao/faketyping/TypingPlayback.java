@@ -0,0 +1,107 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 可以由控制面板控制的打字过程：单个打字会话，或者由多个步骤组成的打字脚本
+ */
+public interface TypingPlayback {
+
+    Project getProject();
+
+    /**
+     * 当前打字的编辑器，还没有打开编辑器时返回null
+     */
+    @Nullable
+    Editor getEditor();
+
+    TypingConfig getConfig();
+
+    /**
+     * 生成打字节奏的随机种子
+     */
+    long getSeed();
+
+    /**
+     * 是否有随机种子，没有时控制面板不显示种子
+     */
+    default boolean hasSeed() {
+        return true;
+    }
+
+    boolean isPaused();
+
+    boolean isEnded();
+
+    /**
+     * 暂停打字
+     */
+    void pause();
+
+    /**
+     * 从当前位置继续打字
+     */
+    void resume();
+
+    /**
+     * 停止打字并还原
+     */
+    void restore();
+
+    /**
+     * 跳转到指定行的行首
+     * @param line 文档中的行号（从1开始）
+     * @return 无法跳转时返回false
+     */
+    boolean seekToLine(int line);
+
+    /**
+     * 跳转到下一个标记所在行的行首
+     * @return 没有更多标记时返回false
+     */
+    boolean seekToNextMarker();
+
+    /**
+     * 设置快进倍速
+     * @param rate 倍速，1为正常速度
+     */
+    void setPlaybackRate(double rate);
+
+    /**
+     * 已删除和已输入的字符数
+     */
+    int getTypedLength();
+
+    /**
+     * 性能指标摘要，未开启指标收集时返回空字符串
+     */
+    default String getMetricsSummary() {
+        return "";
+    }
+
+    /**
+     * 需要删除和输入的总字符数
+     */
+    int getContentLength();
+
+    /**
+     * 当前光标在文档中的位置
+     */
+    int getCaretOffset();
+
+    /**
+     * 控制面板标题
+     */
+    default String getTitle() {
+        return "FakeTyping 控制";
+    }
+
+    /**
+     * 显示在进度之前的说明，例如脚本当前执行到第几步
+     */
+    default String getStepDescription() {
+        return "";
+    }
+}
@@ -0,0 +1,178 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.EditorFactoryEvent;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 打字会话调度服务（应用级）
+ * 所有打字会话共用平台的定时线程池，不再为每次运行单独创建线程。
+ * 会话按ID登记，所在项目关闭或编辑器释放时会被自动取消。
+ */
+public class TypingScheduler implements Disposable {
+    private final ScheduledExecutorService executor = AppExecutorUtil.getAppScheduledExecutorService();
+    private final AtomicLong nextSessionId = new AtomicLong(1);
+    private final Map<Long, SessionEntry> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取调度服务实例
+     *
+     * @return TypingScheduler实例
+     */
+    public static TypingScheduler getInstance() {
+        return ApplicationManager.getApplication().getService(TypingScheduler.class);
+    }
+
+    /**
+     * 登记一个打字会话
+     * @param project 会话所在项目，项目关闭时取消会话
+     * @param editor 会话所在编辑器，编辑器释放时取消会话
+     * @param onCancel 会话被取消时的回调
+     * @return 会话ID
+     */
+    public long register(@NotNull Project project, @NotNull Editor editor, @NotNull Runnable onCancel) {
+        long sessionId = nextSessionId.getAndIncrement();
+        Disposable disposable = Disposer.newDisposable("FakeTyping session " + sessionId);
+        sessions.put(sessionId, new SessionEntry(disposable, onCancel));
+
+        // 项目关闭时释放会话
+        Disposer.register(project, disposable);
+        Disposer.register(disposable, () -> {
+            SessionEntry entry = sessions.remove(sessionId);
+            if (entry != null) {
+                entry.cancelFrames();
+                entry.onCancel.run();
+            }
+        });
+        // 编辑器释放时释放会话
+        EditorFactory.getInstance().addEditorFactoryListener(new EditorFactoryListener() {
+            @Override
+            public void editorReleased(@NotNull EditorFactoryEvent event) {
+                if (event.getEditor() == editor) {
+                    cancel(sessionId);
+                }
+            }
+        }, disposable);
+        return sessionId;
+    }
+
+    /**
+     * 按固定帧间隔执行会话的帧任务，替换该会话之前的帧任务
+     * @param sessionId 会话ID
+     * @param frame 帧任务
+     * @param intervalMs 帧间隔（毫秒）
+     */
+    public void scheduleFrames(long sessionId, @NotNull Runnable frame, int intervalMs) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry == null) {
+            return;
+        }
+        entry.cancelFrames();
+        // 使用固定延迟调度，保证两帧之间至少间隔一个帧间隔
+        entry.frameFuture = executor.scheduleWithFixedDelay(frame, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在共享线程池上延迟执行一次任务（用于脚本中的停顿）
+     * @param task 任务
+     * @param delayMs 延迟（毫秒）
+     * @return 可用于取消的任务句柄
+     */
+    public ScheduledFuture<?> schedule(@NotNull Runnable task, long delayMs) {
+        return executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在共享线程池上按固定间隔重复执行任务（用于写入检查点）
+     * @param task 任务
+     * @param intervalMs 间隔（毫秒）
+     * @return 可用于取消的任务句柄
+     */
+    public ScheduledFuture<?> scheduleRepeating(@NotNull Runnable task, long intervalMs) {
+        return executor.scheduleWithFixedDelay(task, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止会话的帧任务，会话仍保持登记状态（用于暂停）
+     * @param sessionId 会话ID
+     */
+    public void pauseFrames(long sessionId) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry != null) {
+            entry.cancelFrames();
+        }
+    }
+
+    /**
+     * 会话正常结束，注销会话但不触发取消回调
+     * @param sessionId 会话ID
+     */
+    public void finish(long sessionId) {
+        SessionEntry entry = sessions.remove(sessionId);
+        if (entry != null) {
+            entry.cancelFrames();
+            Disposer.dispose(entry.disposable);
+        }
+    }
+
+    /**
+     * 取消会话，停止帧任务并触发取消回调
+     * @param sessionId 会话ID
+     */
+    public void cancel(long sessionId) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry != null) {
+            Disposer.dispose(entry.disposable);
+        }
+    }
+
+    /**
+     * 当前登记中的会话数量
+     */
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public void dispose() {
+        for (Long sessionId : sessions.keySet()) {
+            cancel(sessionId);
+        }
+    }
+
+    /**
+     * 登记中的会话
+     */
+    private static class SessionEntry {
+        private final Disposable disposable;
+        private final Runnable onCancel;
+        private volatile ScheduledFuture<?> frameFuture;
+
+        private SessionEntry(Disposable disposable, Runnable onCancel) {
+            this.disposable = disposable;
+            this.onCancel = onCancel;
+        }
+
+        private void cancelFrames() {
+            ScheduledFuture<?> future = frameFuture;
+            if (future != null) {
+                future.cancel(false);
+                frameFuture = null;
+            }
+        }
+    }
+}
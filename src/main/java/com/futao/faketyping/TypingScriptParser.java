@@ -0,0 +1,229 @@
+package com.futao.faketyping;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 打字脚本的流式解析器
+ * 每次调用 {@link #next()} 只读取下一条命令需要的行，不会把整个脚本读入内存；
+ * 多行输入内容按块返回，每块不超过 {@link #MAX_CHUNK_CHARS} 个字符（单行超长时除外），
+ * 因此即使脚本包含几十个文件、几MB的内容，占用的内存也只有一块的大小。
+ *
+ * <pre>
+ * # 注释和空行会被忽略
+ * open src/Main.java        打开文件，路径相对于脚本所在目录，不存在时创建
+ * goto 12                   光标移动到第12行行首，也可以写成 goto 12:5
+ * end                       光标移动到文件末尾
+ * type int a = 1;\n         在光标处输入一行内容，支持 \n \t \\ \&lt; 转义
+ * type &lt;&lt;EOF              在光标处输入多行内容，直到单独一行的 EOF 为止（结束标记只能是字母、数字和下划线）
+ * type \&lt;&lt; endl;           输入以 &lt;&lt; 开头的单行内容，&lt;&lt; 之后不是标识符时也可以不转义
+ * ...
+ * EOF
+ * delete 10 12              删除第10到12行（整行）
+ * delete 10:5 10:9          删除第10行第5列到第9列之前的内容
+ * pause 500                 停顿500毫秒
+ * speed 30                  之后的打字速度改为30毫秒/字符
+ * save                      保存当前文件
+ * </pre>
+ */
+public class TypingScriptParser implements Closeable {
+    // 多行输入内容每块的最大字符数
+    public static final int MAX_CHUNK_CHARS = 64 * 1024;
+    // 多行输入的开始：<< 之后紧跟一个标识符作为结束标记
+    private static final Pattern HEREDOC = Pattern.compile("<<([A-Za-z_][A-Za-z0-9_]*)");
+
+    private final BufferedReader reader;
+    // 已读取的行数
+    private int lineNumber = 0;
+    // 正在读取的多行内容的结束标记，不在多行内容中时为null
+    private String heredocTerminator;
+
+    /**
+     * 构造函数
+     * @param reader 脚本内容
+     */
+    public TypingScriptParser(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * 读取下一条命令
+     * @return 命令，脚本结束时返回null
+     * @throws IOException 读取失败或脚本格式错误
+     */
+    @Nullable
+    public ScriptCommand next() throws IOException {
+        if (heredocTerminator != null) {
+            return readHeredocChunk();
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int space = indexOfWhitespace(trimmed);
+            String name = space < 0 ? trimmed : trimmed.substring(0, space);
+            String argument = space < 0 ? "" : trimmed.substring(space + 1).trim();
+            switch (name) {
+                case "open":
+                    requireArgument(name, argument);
+                    return ScriptCommand.open(lineNumber, argument);
+                case "goto": {
+                    requireArgument(name, argument);
+                    int[] position = parsePosition(argument);
+                    return ScriptCommand.moveTo(lineNumber, position[0], position[1]);
+                }
+                case "end":
+                    return ScriptCommand.moveToEnd(lineNumber);
+                case "type": {
+                    // 单行内容保留前导空格，只去掉命令名之后的一个空格
+                    String text = space < 0 ? "" : line.substring(line.indexOf(name) + name.length() + 1);
+                    Matcher heredoc = HEREDOC.matcher(text.trim());
+                    if (heredoc.matches()) {
+                        heredocTerminator = heredoc.group(1);
+                        return readHeredocChunk();
+                    }
+                    return ScriptCommand.type(lineNumber, unescape(text));
+                }
+                case "delete": {
+                    String[] parts = argument.split("\\s+");
+                    if (parts.length != 2) {
+                        throw error("delete 需要开始和结束两个位置");
+                    }
+                    int[] start = parsePosition(parts[0]);
+                    int[] end = parsePosition(parts[1]);
+                    if ((start[1] == 0) != (end[1] == 0)) {
+                        throw error("delete 的两个位置必须都指定列或都不指定列");
+                    }
+                    if (end[0] < start[0] || (end[0] == start[0] && end[1] < start[1])) {
+                        throw error("delete 的结束位置不能在开始位置之前");
+                    }
+                    return ScriptCommand.delete(lineNumber, start[0], start[1], end[0], end[1]);
+                }
+                case "pause":
+                    return ScriptCommand.pause(lineNumber, parseNumber(argument));
+                case "speed":
+                    return ScriptCommand.speed(lineNumber, (int) Math.max(1, Math.min(Integer.MAX_VALUE, parseNumber(argument))));
+                case "save":
+                    return ScriptCommand.save(lineNumber);
+                default:
+                    throw error("未知命令 " + name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取多行内容的下一块，读到结束标记时退出多行状态
+     */
+    private ScriptCommand readHeredocChunk() throws IOException {
+        int startLine = lineNumber;
+        StringBuilder chunk = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.equals(heredocTerminator)) {
+                heredocTerminator = null;
+                return ScriptCommand.type(startLine, chunk.toString());
+            }
+            chunk.append(line).append('\n');
+            if (chunk.length() >= MAX_CHUNK_CHARS) {
+                return ScriptCommand.type(startLine, chunk.toString());
+            }
+        }
+        throw error("多行输入缺少结束标记 " + heredocTerminator);
+    }
+
+    /**
+     * 解析 行 或 行:列
+     * @return 行号和列号，未指定列时列号为0
+     */
+    private int[] parsePosition(String text) throws IOException {
+        int colon = text.indexOf(':');
+        int line = (int) parseNumber(colon < 0 ? text : text.substring(0, colon));
+        int column = colon < 0 ? 0 : (int) parseNumber(text.substring(colon + 1));
+        if (line < 1 || (colon >= 0 && column < 1)) {
+            throw error("行号和列号从1开始：" + text);
+        }
+        return new int[]{line, column};
+    }
+
+    private long parseNumber(String text) throws IOException {
+        try {
+            long value = Long.parseLong(text.trim());
+            if (value < 0) {
+                throw error("不能为负数：" + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw error("不是有效的数字：" + text);
+        }
+    }
+
+    private void requireArgument(String name, String argument) throws IOException {
+        if (argument.isEmpty()) {
+            throw error(name + " 缺少参数");
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException("脚本第 " + lineNumber + " 行：" + message);
+    }
+
+    private static int indexOfWhitespace(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 处理单行内容中的转义：\n 换行，\t 制表符，\\ 反斜杠，\< 小于号
+     */
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                switch (next) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case '\\':
+                        builder.append('\\');
+                        break;
+                    case '<':
+                        builder.append('<');
+                        break;
+                    default:
+                        builder.append(c).append(next);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
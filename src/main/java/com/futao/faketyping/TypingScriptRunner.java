@@ -0,0 +1,470 @@
+package com.futao.faketyping;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ScrollType;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 打字脚本执行器
+ * 逐条读取并执行脚本命令：读取在后台线程进行，执行在EDT上进行；输入和删除命令各创建一个打字会话，
+ * 会话完成后再读取下一条命令，停顿使用共享的调度线程池。任何时刻内存中只有当前一条命令的内容。
+ * 执行器实现 {@link TypingPlayback}，可以用同一个控制面板暂停、快进或停止整个脚本。
+ * 执行器本身不弹出对话框，脚本出错时 {@link #getCompletion()} 异常完成，由调用方决定如何提示。
+ */
+public class TypingScriptRunner implements TypingPlayback, Disposable {
+    private final Project project;
+    // 脚本所在目录，脚本中的相对路径相对于它
+    private final VirtualFile baseDir;
+    private final TypingScriptParser parser;
+    // 整个脚本的随机种子，第n步使用 seed + n，相同种子的脚本节奏完全相同
+    private final long seed;
+    private TypingConfig config;
+    private Editor editor;
+    // 当前输入或删除步骤的会话
+    private TypingSession session;
+    // 当前停顿步骤
+    private ScheduledFuture<?> pauseFuture;
+    private double playbackRate = 1;
+    // 已执行的步骤数
+    private int step = 0;
+    // 暂停期间有步骤完成，继续时再读取下一条命令
+    private boolean pendingNext = false;
+    private volatile boolean paused = false;
+    private volatile boolean ended = false;
+    // 脚本执行完成时以true完成，被停止时以false完成，出错时异常完成
+    private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+    // 完成时是否显示通知
+    private boolean notifyOnCompletion = true;
+
+    /**
+     * 构造函数，创建后需要调用 {@link #start()} 开始执行
+     * @param project 当前项目
+     * @param scriptFile 脚本文件
+     * @param config 配置，脚本中的 speed 命令会在此基础上修改打字速度
+     * @param editor 初始编辑器，脚本在第一条 open 命令之前作用于它，可以为null
+     * @throws IOException 无法读取脚本文件
+     */
+    public TypingScriptRunner(Project project, VirtualFile scriptFile, TypingConfig config, @Nullable Editor editor)
+            throws IOException {
+        this.project = project;
+        this.baseDir = scriptFile.getParent();
+        this.parser = new TypingScriptParser(new InputStreamReader(scriptFile.getInputStream(), scriptFile.getCharset()));
+        this.seed = config.isFixedSeed() ? config.getSeed() : System.nanoTime();
+        this.config = config;
+        this.editor = editor;
+        // 项目关闭时停止脚本
+        Disposer.register(project, this);
+    }
+
+    /**
+     * 开始执行脚本
+     */
+    public void start() {
+        advance();
+    }
+
+    /**
+     * 在后台线程读取下一条命令，再回到EDT执行（只在EDT上调用）
+     */
+    private void advance() {
+        if (ended) {
+            return;
+        }
+        if (paused) {
+            pendingNext = true;
+            return;
+        }
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            ScriptCommand command;
+            try {
+                command = parser.next();
+            } catch (IOException e) {
+                ApplicationManager.getApplication().invokeLater(() -> fail(e.getMessage()), project.getDisposed());
+                return;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> execute(command), project.getDisposed());
+        });
+    }
+
+    /**
+     * 执行一条命令，脚本结束时command为null
+     */
+    private void execute(@Nullable ScriptCommand command) {
+        if (ended) {
+            return;
+        }
+        if (command == null) {
+            complete();
+            return;
+        }
+        step++;
+        if (command.getKind() != ScriptCommand.Kind.OPEN && command.getKind() != ScriptCommand.Kind.PAUSE
+                && command.getKind() != ScriptCommand.Kind.SPEED && editor == null) {
+            fail("脚本第 " + command.getScriptLine() + " 行：还没有打开文件");
+            return;
+        }
+        switch (command.getKind()) {
+            case OPEN:
+                if (openFile(command)) {
+                    advance();
+                }
+                break;
+            case GOTO: {
+                int offset = offsetOf(command, command.getLine(), command.getColumn());
+                if (offset >= 0) {
+                    moveCaret(offset);
+                    advance();
+                }
+                break;
+            }
+            case END:
+                moveCaret(editor.getDocument().getTextLength());
+                advance();
+                break;
+            case TYPE:
+                runSession(EditScript.insertion(editor.getCaretModel().getOffset(), command.getText()));
+                break;
+            case DELETE:
+                delete(command);
+                break;
+            case PAUSE:
+                pauseFuture = TypingScheduler.getInstance().schedule(
+                        () -> ApplicationManager.getApplication().invokeLater(this::advance, project.getDisposed()),
+                        (long) (command.getValue() / playbackRate));
+                break;
+            case SPEED:
+                config = config.withTypingSpeed((int) command.getValue());
+                advance();
+                break;
+            case SAVE:
+                FileDocumentManager.getInstance().saveDocument(editor.getDocument());
+                advance();
+                break;
+        }
+    }
+
+    /**
+     * 打开文件，不存在时创建
+     * @return 失败时返回false
+     */
+    private boolean openFile(ScriptCommand command) {
+        String path = command.getText();
+        VirtualFile file;
+        try {
+            file = new File(path).isAbsolute()
+                    ? LocalFileSystem.getInstance().refreshAndFindFileByPath(path)
+                    : baseDir.findFileByRelativePath(path);
+            if (file == null) {
+                file = WriteAction.compute(() -> createFile(path));
+            }
+        } catch (IOException e) {
+            fail("脚本第 " + command.getScriptLine() + " 行：无法创建文件 " + path + "：" + e.getMessage());
+            return false;
+        }
+        // 无界面运行时创建的独立编辑器随执行器一起释放
+        Editor opened = FakeTypingService.getInstance(project).openEditor(file, this);
+        if (opened == null) {
+            fail("脚本第 " + command.getScriptLine() + " 行：无法在编辑器中打开 " + path);
+            return false;
+        }
+        editor = opened;
+        return true;
+    }
+
+    private VirtualFile createFile(String path) throws IOException {
+        File file = new File(path);
+        VirtualFile parent;
+        if (file.isAbsolute()) {
+            parent = VfsUtil.createDirectoryIfMissing(file.getParent());
+        } else {
+            String parentPath = file.getParent();
+            parent = parentPath == null ? baseDir : VfsUtil.createDirectoryIfMissing(baseDir, parentPath.replace(File.separatorChar, '/'));
+        }
+        if (parent == null) {
+            throw new IOException("无法创建目录");
+        }
+        return parent.createChildData(this, file.getName());
+    }
+
+    /**
+     * 删除命令：未指定列时删除整行，指定列时删除 [开始, 结束) 之间的内容
+     */
+    private void delete(ScriptCommand command) {
+        Document document = editor.getDocument();
+        int start;
+        int end;
+        if (command.getColumn() == 0) {
+            start = offsetOf(command, command.getLine(), 0);
+            if (start < 0 || offsetOf(command, command.getEndLine(), 0) < 0) {
+                return;
+            }
+            end = command.getEndLine() >= document.getLineCount()
+                    ? document.getTextLength()
+                    : document.getLineStartOffset(command.getEndLine());
+        } else {
+            start = offsetOf(command, command.getLine(), command.getColumn());
+            end = offsetOf(command, command.getEndLine(), command.getEndColumn());
+            if (start < 0 || end < 0) {
+                return;
+            }
+        }
+        moveCaret(end);
+        runSession(EditScript.deletion(start, document.getImmutableCharSequence().subSequence(start, end)));
+    }
+
+    /**
+     * 用一个打字会话执行编辑脚本，完成后继续下一条命令
+     */
+    private void runSession(EditScript script) {
+        if (script.getStreamLength() == 0) {
+            advance();
+            return;
+        }
+        TypingSession current = TypingSessionRegistry.getInstance()
+                .startScriptSession(project, editor, config.withSeed(seed + step), script);
+        session = current;
+        current.setPlaybackRate(playbackRate);
+        if (paused) {
+            current.pause();
+        }
+        current.getCompletion().thenAccept(completed -> ApplicationManager.getApplication().invokeLater(() -> {
+            if (session == current) {
+                session = null;
+            }
+            if (completed) {
+                advance();
+            } else if (!ended) {
+                // 这一步被还原或取消，停止整个脚本
+                stop();
+            }
+        }, project.getDisposed()));
+    }
+
+    /**
+     * 计算行列对应的文档位置，超出范围时报告错误并返回-1
+     * @param line 行号（从1开始）
+     * @param column 列号（从1开始），0表示行首
+     */
+    private int offsetOf(ScriptCommand command, int line, int column) {
+        Document document = editor.getDocument();
+        // 空文档也有第1行
+        int lineCount = Math.max(1, document.getLineCount());
+        if (line > lineCount) {
+            fail("脚本第 " + command.getScriptLine() + " 行：行号 " + line + " 超出范围（共 " + lineCount + " 行）");
+            return -1;
+        }
+        if (document.getTextLength() == 0) {
+            return 0;
+        }
+        int lineStart = document.getLineStartOffset(line - 1);
+        int lineEnd = document.getLineEndOffset(line - 1);
+        return column == 0 ? lineStart : Math.min(lineEnd, lineStart + column - 1);
+    }
+
+    private void moveCaret(int offset) {
+        editor.getCaretModel().moveToOffset(offset);
+        editor.getScrollingModel().scrollToCaret(ScrollType.MAKE_VISIBLE);
+    }
+
+    /**
+     * 脚本全部执行完成
+     */
+    private void complete() {
+        int steps = step;
+        completion.complete(true);
+        Disposer.dispose(this);
+        if (!notifyOnCompletion) {
+            return;
+        }
+        Notifications.Bus.notify(
+                new Notification(
+                        "FakeTyping",
+                        "FakeTyping脚本完成",
+                        "脚本已执行完成，共 " + steps + " 步；随机种子 " + seed,
+                        NotificationType.INFORMATION
+                ),
+                project
+        );
+    }
+
+    /**
+     * 脚本出错，停止执行
+     */
+    private void fail(String message) {
+        if (ended) {
+            return;
+        }
+        completion.completeExceptionally(new IOException(message));
+        Disposer.dispose(this);
+    }
+
+    /**
+     * 停止脚本，已经完成的步骤保持不变
+     */
+    private void stop() {
+        Disposer.dispose(this);
+    }
+
+    /**
+     * 脚本执行完成时以true完成，被停止（包括项目关闭）时以false完成，出错时以 {@link IOException} 异常完成
+     */
+    public CompletableFuture<Boolean> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * 设置完成时是否显示通知
+     * @param notifyOnCompletion 是否显示通知
+     */
+    void setNotifyOnCompletion(boolean notifyOnCompletion) {
+        this.notifyOnCompletion = notifyOnCompletion;
+    }
+
+    @Override
+    public void dispose() {
+        ended = true;
+        completion.complete(false);
+        ScheduledFuture<?> future = pauseFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响结果
+        }
+    }
+
+    @Override
+    public Project getProject() {
+        return project;
+    }
+
+    @Nullable
+    @Override
+    public Editor getEditor() {
+        return editor;
+    }
+
+    @Override
+    public TypingConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public boolean isEnded() {
+        return ended;
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+        if (session != null) {
+            session.pause();
+        }
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        if (session != null) {
+            session.resume();
+        }
+        if (pendingNext) {
+            pendingNext = false;
+            advance();
+        }
+    }
+
+    /**
+     * 停止脚本，并还原当前正在执行的一步
+     */
+    @Override
+    public void restore() {
+        TypingSession current = session;
+        stop();
+        if (current != null && !current.isEnded()) {
+            current.restore();
+        }
+    }
+
+    @Override
+    public boolean seekToLine(int line) {
+        return session != null && session.seekToLine(line);
+    }
+
+    @Override
+    public boolean seekToNextMarker() {
+        return session != null && session.seekToNextMarker();
+    }
+
+    @Override
+    public void setPlaybackRate(double rate) {
+        playbackRate = rate;
+        if (session != null) {
+            session.setPlaybackRate(rate);
+        }
+    }
+
+    @Override
+    public int getTypedLength() {
+        return session != null ? session.getTypedLength() : 0;
+    }
+
+    @Override
+    public int getContentLength() {
+        return session != null ? session.getContentLength() : 0;
+    }
+
+    @Override
+    public String getMetricsSummary() {
+        return session != null ? session.getMetricsSummary() : "";
+    }
+
+    @Override
+    public int getCaretOffset() {
+        if (session != null) {
+            return session.getCaretOffset();
+        }
+        return editor != null ? editor.getCaretModel().getOffset() : 0;
+    }
+
+    @Override
+    public String getTitle() {
+        return "FakeTyping 脚本";
+    }
+
+    @Override
+    public String getStepDescription() {
+        return "第 " + step + " 步，";
+    }
+}
@@ -0,0 +1,454 @@
+package com.futao.faketyping;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationAction;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.openapi.util.text.StringUtil;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一个文档上的打字会话
+ * 会话持有自己的配置、原始内容、撤销分组和打字引擎，多个会话可以在不同编辑器中同时运行，互不干扰
+ */
+public class TypingSession implements TypingPlayback {
+    private final long id;
+    private final Project project;
+    private final Editor editor;
+    private final Document document;
+    private final TypingConfig config;
+    // 原始内容的不可变快照，与文档共享存储，用于还原，会话结束或还原后释放
+    private volatile CharSequence originalContent;
+    // 打字完成后文档的内容，会话结束或还原后释放
+    private volatile CharSequence targetContent;
+    // 会话开始时文档被设置成的内容，开始后释放
+    private CharSequence initialContent;
+    private final TypingUndoGroup undoGroup;
+    private final HighlightingThrottle highlightingThrottle;
+    // 文档或目标内容达到大文件阈值时为true
+    private final boolean largeFile;
+    private final LargeFileHighlighter largeFileHighlighter;
+    // 生成时间线的随机种子，相同种子得到相同的打字节奏
+    private final long seed;
+    private final TypingEngine engine;
+    // 全部内容输入完成时以true完成，被还原或取消时以false完成
+    private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+    // 完成时是否显示通知，脚本中的每一步不单独通知
+    private boolean notifyOnCompletion = true;
+    // 崩溃保护日志，会话开始后创建
+    private SessionJournal journal;
+    private volatile boolean paused = false;
+    private volatile boolean ended = false;
+
+    /**
+     * 构造函数：清空文档后重新输入全部内容，会话创建后需要调用 {@link #start()} 开始打字
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     */
+    public TypingSession(Project project, Editor editor, TypingConfig config) {
+        this(project, editor, config, "", editor.getDocument().getImmutableCharSequence());
+    }
+
+    /**
+     * 构造函数：按编辑脚本修改文档的一部分（用于打字脚本中的输入和删除），不修改脚本之外的内容
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     * @param script 编辑脚本
+     */
+    public TypingSession(Project project, Editor editor, TypingConfig config, EditScript script) {
+        this(project, editor, config, editor.getDocument().getImmutableCharSequence(), null, script.getTarget(), script);
+    }
+
+    /**
+     * 构造函数：把文档设置为起始内容后，只删除和输入与目标内容不同的部分
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     * @param initialContent 会话开始时文档被设置成的内容（不可变快照）
+     * @param targetContent 打字完成后文档的内容（不可变快照）
+     */
+    public TypingSession(Project project, Editor editor, TypingConfig config,
+                         CharSequence initialContent, CharSequence targetContent) {
+        this(project, editor, config, editor.getDocument().getImmutableCharSequence(), initialContent, targetContent);
+    }
+
+    /**
+     * 构造函数：继续一个被中断的会话，还原时恢复为被中断会话的原始内容
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     * @param originalContent 还原时文档恢复成的内容
+     * @param initialContent 会话开始时文档被设置成的内容
+     * @param targetContent 打字完成后文档的内容
+     */
+    public TypingSession(Project project, Editor editor, TypingConfig config, CharSequence originalContent,
+                         CharSequence initialContent, CharSequence targetContent) {
+        this(project, editor, config, originalContent, initialContent, targetContent,
+                EditScript.compute(initialContent, targetContent));
+    }
+
+    private TypingSession(Project project, Editor editor, TypingConfig config, CharSequence originalContent,
+                          CharSequence initialContent, CharSequence targetContent, EditScript script) {
+        this.project = project;
+        this.editor = editor;
+        this.document = editor.getDocument();
+        this.config = config;
+        this.originalContent = originalContent;
+        this.initialContent = initialContent;
+        this.targetContent = targetContent;
+        this.undoGroup = new TypingUndoGroup(project, document, config);
+        // 大文件只对光标附近的窗口着色，并暂停代码分析
+        this.largeFile = LargeFileHighlighter.isLargeFile(
+                Math.max(document.getTextLength(), targetContent.length()), config);
+        this.highlightingThrottle = new HighlightingThrottle(project, document, config, largeFile);
+        this.largeFileHighlighter = new LargeFileHighlighter(project, editor, config);
+        // 一次性计算整个会话的时间线
+        // 每个会话独享自己的随机数生成器，不与其他会话竞争
+        this.seed = config.isFixedSeed() ? config.getSeed() : System.nanoTime();
+        TypingTimeline timeline = TypingTimeline.build(script,
+                new EmissionPlanner(targetContent, config.getGranularity()),
+                TimingModel.create(config, new SplittableRandom(seed)), config.getGranularity());
+        // 项目关闭或编辑器释放时由调度服务取消会话
+        // 最后登记，之前的步骤出错时调度服务中不会留下登记；创建引擎失败时注销
+        this.id = TypingScheduler.getInstance().register(project, editor, this::onCancelled);
+        try {
+            this.engine = new TypingEngine(id, project, editor, script, timeline, config, undoGroup,
+                    highlightingThrottle, largeFileHighlighter, this::onCompleted);
+        } catch (RuntimeException | Error e) {
+            TypingScheduler.getInstance().finish(id);
+            throw e;
+        }
+    }
+
+    /**
+     * 把文档设置为起始内容（完整重新输入时清空文档）并开始打字
+     */
+    public void start() {
+        CharSequence initial = initialContent;
+        initialContent = null;
+        // 在写入命令中设置起始内容，只输入差异时起始内容通常就是当前内容，无需修改
+        if (initial != null && !StringUtil.equals(document.getImmutableCharSequence(), initial)) {
+            undoGroup.write(Math.max(document.getTextLength(), initial.length()), () -> {
+                document.setText(initial);
+            });
+        }
+        // 记录原始内容和打字进度，IDE 关闭或崩溃后可以继续或还原
+        // 脚本中的每一步（没有起始内容）只修改一小段内容，不写日志
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (initial != null && file != null && file.isInLocalFileSystem()) {
+            journal = SessionJournal.start(file.getPath(), project.getBasePath(), seed, config.getTypingSpeed(),
+                    originalContent, initial, targetContent, engine::getTypedLength);
+        }
+        highlightingThrottle.suspend();
+        if (largeFile) {
+            largeFileHighlighter.activate();
+        }
+        engine.start();
+    }
+
+    /**
+     * 暂停打字
+     */
+    public void pause() {
+        paused = true;
+        engine.pause();
+    }
+
+    /**
+     * 从当前位置继续打字
+     */
+    public void resume() {
+        paused = false;
+        engine.start();
+    }
+
+    /**
+     * 跳转到时间线上的指定时间点，之后从该时间点继续
+     * @param timeMs 相对会话开始的毫秒数（不含暂停时间）
+     */
+    public void seekToTime(long timeMs) {
+        engine.seekToUnit(engine.getTimeline().unitsDueAt(timeMs));
+    }
+
+    /**
+     * 跳转到指定的按键位置（用于继续被中断的会话），之后从该位置继续
+     * @param position 按键位置，即已删除和已输入的字符数
+     */
+    public void seekToPosition(int position) {
+        engine.seekToUnit(engine.getTimeline().unitsCovering(position));
+    }
+
+    /**
+     * 跳转到目标内容中的指定位置，该位置之前的修改一次性完成，之后从该位置继续
+     * @param offset 目标内容中的位置
+     */
+    public void seekToOffset(int offset) {
+        EditScript script = engine.getScript();
+        if (script == null) {
+            return;
+        }
+        engine.seekToUnit(engine.getTimeline().unitsCovering(script.positionOf(offset)));
+    }
+
+    /**
+     * 跳转到指定行的行首，该行之前的内容一次性输入，之后从该行继续
+     * 脚本中的一步只修改文档中从脚本起始位置开始的一段内容，行号按整个文档计算，
+     * 起始位置之前的内容在会话期间不变，行首不在这段内容中的行无法跳转
+     * @param line 文档中的行号（从1开始）
+     * @return 行号超出范围或会话已结束时返回false
+     */
+    public boolean seekToLine(int line) {
+        CharSequence content = targetContent;
+        if (content == null || line < 1) {
+            return false;
+        }
+        int anchor = Math.min(engine.getScript().getAnchor(), document.getTextLength());
+        int anchorLine = document.getLineNumber(anchor);
+        int contentLine = line - 1 - anchorLine;
+        if (contentLine < 0 || contentLine == 0 && anchor != document.getLineStartOffset(anchorLine)) {
+            return false;
+        }
+        int offset = StringUtil.lineColToOffset(content, contentLine, 0);
+        if (offset < 0) {
+            return false;
+        }
+        seekToOffset(offset);
+        return true;
+    }
+
+    /**
+     * 跳转到当前位置之后下一个标记所在行的行首
+     * @return 没有更多标记或会话已结束时返回false
+     */
+    public boolean seekToNextMarker() {
+        CharSequence content = targetContent;
+        String marker = config.getSeekMarker();
+        if (content == null || marker.isEmpty()) {
+            return false;
+        }
+        // 转换为目标内容中的位置
+        int typed = engine.getDocumentOffset() - engine.getScript().getAnchor();
+        int index = StringUtil.indexOf(content, marker, typed);
+        while (index >= 0) {
+            // 标记所在行的行首
+            int lineStart = StringUtil.lastIndexOf(content, '\n', 0, index) + 1;
+            if (lineStart > typed) {
+                seekToOffset(lineStart);
+                return true;
+            }
+            index = StringUtil.indexOf(content, marker, index + marker.length());
+        }
+        return false;
+    }
+
+    /**
+     * 设置快进倍速
+     * @param rate 倍速，1为正常速度
+     */
+    public void setPlaybackRate(double rate) {
+        engine.setPlaybackRate(rate);
+    }
+
+    public double getPlaybackRate() {
+        return engine.getPlaybackRate();
+    }
+
+    /**
+     * 已删除和已输入的字符数
+     */
+    public int getTypedLength() {
+        return engine.getTypedLength();
+    }
+
+    /**
+     * 当前光标在文档中的位置
+     */
+    public int getCaretOffset() {
+        return engine.getDocumentOffset();
+    }
+
+    /**
+     * 需要删除和输入的总字符数
+     */
+    public int getContentLength() {
+        return engine.getContentLength();
+    }
+
+    @Override
+    public String getMetricsSummary() {
+        TypingMetrics metrics = engine.getMetrics();
+        return metrics != null ? metrics.summary() : "";
+    }
+
+    /**
+     * 停止打字并把文档还原为原始内容
+     */
+    public void restore() {
+        CharSequence content = originalContent;
+        // 取消当前任务
+        engine.stop();
+        end(false);
+        if (content == null) {
+            return;
+        }
+
+        // 还原文件内容
+        ApplicationManager.getApplication().invokeAndWait(() -> undoGroup.write(content.length(), () -> {
+            document.setText(content);
+        }));
+
+        // 显示通知
+        Notifications.Bus.notify(
+                new Notification(
+                        "FakeTyping",
+                        "FakeTyping已还原",
+                        "文件内容已还原为原始状态",
+                        NotificationType.INFORMATION
+                ),
+                project
+        );
+    }
+
+    /**
+     * 全部内容输入完成
+     */
+    private void onCompleted() {
+        end(true);
+        if (!notifyOnCompletion) {
+            return;
+        }
+        // 显示完成通知
+        Notification notification = new Notification(
+                "FakeTyping",
+                "FakeTyping完成",
+                "文件内容已成功以打字机效果重新输入。" + engine.speedReport() + "；" + undoGroup.report() + "；随机种子 " + seed,
+                NotificationType.INFORMATION
+        );
+        TypingMetrics metrics = engine.getMetrics();
+        if (metrics != null) {
+            notification.addAction(NotificationAction.createSimple("导出性能指标CSV", () -> exportMetrics(metrics)));
+        }
+        Notifications.Bus.notify(notification, project);
+    }
+
+    /**
+     * 让用户选择位置，把性能指标保存为CSV文件
+     */
+    private void exportMetrics(TypingMetrics metrics) {
+        VirtualFileWrapper wrapper = FileChooserFactory.getInstance()
+                .createSaveFileDialog(new FileSaverDescriptor("导出性能指标", "保存为CSV文件", "csv"), project)
+                .save((VirtualFile) null, "fakeTyping-metrics-" + id + ".csv");
+        if (wrapper == null) {
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(wrapper.getFile()), StandardCharsets.UTF_8)) {
+            metrics.writeCsv(writer);
+        } catch (IOException e) {
+            Messages.showErrorDialog(project, "无法保存性能指标：" + e.getMessage(), "FakeTyping错误");
+        }
+    }
+
+    /**
+     * 会话被调度服务取消（项目关闭或编辑器释放）
+     */
+    private void onCancelled() {
+        engine.stop();
+        // 文档停留在打字中途的状态，保留日志，下次启动时提示继续或还原
+        if (journal != null) {
+            journal.close(true);
+        }
+        end(false);
+    }
+
+    /**
+     * 结束会话：注销调度并从会话登记表中移除
+     * @param completed 是否全部内容输入完成
+     */
+    private void end(boolean completed) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (journal != null) {
+            journal.close(false);
+        }
+        // 释放内容快照
+        originalContent = null;
+        targetContent = null;
+        initialContent = null;
+        // 恢复代码分析和完整的语法着色
+        ApplicationManager.getApplication().invokeLater(() -> {
+            largeFileHighlighter.deactivate();
+            highlightingThrottle.resume();
+        });
+        TypingScheduler.getInstance().finish(id);
+        TypingSessionRegistry.getInstance().remove(document, this);
+        completion.complete(completed);
+    }
+
+    /**
+     * 会话结束时完成：全部内容输入完成为true，被还原或取消为false
+     */
+    public CompletableFuture<Boolean> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * 设置完成时是否显示通知
+     * @param notifyOnCompletion 是否显示通知
+     */
+    void setNotifyOnCompletion(boolean notifyOnCompletion) {
+        this.notifyOnCompletion = notifyOnCompletion;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    public Editor getEditor() {
+        return editor;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public TypingConfig getConfig() {
+        return config;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+}
@@ -0,0 +1,190 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 打字会话登记表（应用级）
+ * 每个文档最多一个进行中的会话（打字会话或按键回放），不同文档的会话可以同时运行
+ */
+public class TypingSessionRegistry {
+    private final Map<Document, TypingPlayback> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取会话登记表实例
+     *
+     * @return TypingSessionRegistry实例
+     */
+    public static TypingSessionRegistry getInstance() {
+        return ApplicationManager.getApplication().getService(TypingSessionRegistry.class);
+    }
+
+    /**
+     * 在编辑器上创建并开始一个新的打字会话
+     * 如果该文档已有进行中的会话，会先将其还原
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     * @return 新的会话
+     */
+    public TypingSession startSession(@NotNull Project project, @NotNull Editor editor, @NotNull TypingConfig config) {
+        restoreSession(editor.getDocument());
+        return start(new TypingSession(project, editor, config));
+    }
+
+    /**
+     * 在编辑器上创建并开始一个只输入差异的打字会话
+     * 如果该文档已有进行中的会话，会先将其还原
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     * @param initialContent 会话开始时文档被设置成的内容
+     * @param targetContent 打字完成后文档的内容
+     * @return 新的会话
+     */
+    public TypingSession startDiffSession(@NotNull Project project, @NotNull Editor editor, @NotNull TypingConfig config,
+                                          @NotNull CharSequence initialContent, @NotNull CharSequence targetContent) {
+        restoreSession(editor.getDocument());
+        return start(new TypingSession(project, editor, config, initialContent, targetContent));
+    }
+
+    /**
+     * 在编辑器上创建并开始一个按编辑脚本修改文档一部分的会话（打字脚本中的一步），完成时不显示通知
+     * 如果该文档已有进行中的会话，会先将其还原
+     * @param project 当前项目
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     * @param script 编辑脚本
+     * @return 新的会话
+     */
+    public TypingSession startScriptSession(@NotNull Project project, @NotNull Editor editor, @NotNull TypingConfig config,
+                                            @NotNull EditScript script) {
+        restoreSession(editor.getDocument());
+        TypingSession session = new TypingSession(project, editor, config, script);
+        session.setNotifyOnCompletion(false);
+        return start(session);
+    }
+
+    /**
+     * 继续一个被中断的会话：文档设置为该会话的起始内容后，一次性完成到最后一个检查点的修改，再按原节奏继续
+     * 如果该文档已有进行中的会话，会先将其还原
+     * @param project 当前项目
+     * @param editor 会话所在文件的编辑器
+     * @param entry 被中断会话的日志
+     * @return 新的会话
+     */
+    public TypingSession resumeSession(@NotNull Project project, @NotNull Editor editor,
+                                       @NotNull SessionJournal.Entry entry) {
+        restoreSession(editor.getDocument());
+        TypingConfig config = FakeTypingSettings.getInstance().getConfig()
+                .withTypingSpeed(entry.getTypingSpeed())
+                .withSeed(entry.getSeed());
+        TypingSession session = start(new TypingSession(project, editor, config, entry.getOriginalContent(),
+                entry.getInitialContent(), entry.getTargetContent()));
+        session.seekToPosition(entry.getPosition());
+        return session;
+    }
+
+    /**
+     * 在编辑器上创建并开始一个按键录制的回放
+     * 如果该文档已有进行中的会话，会先将其还原
+     * @param project 当前项目
+     * @param editor 回放所在的编辑器
+     * @param config 配置
+     * @param reader 已读取文件头的录制文件，回放结束时关闭
+     * @param rate 回放倍速
+     * @return 新的回放
+     */
+    public KeystrokeReplay startReplay(@NotNull Project project, @NotNull Editor editor, @NotNull TypingConfig config,
+                                       @NotNull KeystrokeLog.Reader reader, double rate) {
+        restoreSession(editor.getDocument());
+        KeystrokeReplay replay = new KeystrokeReplay(project, editor, config, reader);
+        replay.setPlaybackRate(rate);
+        sessions.put(editor.getDocument(), replay);
+        try {
+            replay.start();
+        } catch (RuntimeException | Error e) {
+            abort(editor.getDocument(), replay, e);
+            throw e;
+        }
+        return replay;
+    }
+
+    /**
+     * 登记并开始一个会话，调用方需要在创建会话之前还原该文档上进行中的会话
+     * @param session 新创建的会话
+     * @return 该会话
+     */
+    TypingSession start(TypingSession session) {
+        sessions.put(session.getDocument(), session);
+        try {
+            session.start();
+        } catch (RuntimeException | Error e) {
+            abort(session.getDocument(), session, e);
+            throw e;
+        }
+        return session;
+    }
+
+    /**
+     * 开始失败时还原文档并注销会话，不在登记表中留下无法结束的会话
+     * @param document 会话所在的文档
+     * @param session 开始失败的会话
+     * @param failure 开始时的异常，还原时再出错会附加到该异常上
+     */
+    private void abort(Document document, TypingPlayback session, Throwable failure) {
+        try {
+            session.restore();
+        } catch (RuntimeException | Error e) {
+            failure.addSuppressed(e);
+        } finally {
+            sessions.remove(document, session);
+        }
+    }
+
+    /**
+     * 还原文档上进行中的会话
+     * @param document 文档
+     */
+    public void restoreSession(@NotNull Document document) {
+        TypingPlayback session = sessions.get(document);
+        if (session != null) {
+            session.restore();
+        }
+    }
+
+    /**
+     * 获取文档上进行中的会话
+     * @param document 文档
+     * @return 打字会话或按键回放，没有时返回null
+     */
+    @Nullable
+    public TypingPlayback getSession(@NotNull Document document) {
+        return sessions.get(document);
+    }
+
+    /**
+     * 获取所有进行中的会话
+     */
+    public List<TypingPlayback> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * 会话结束后移除
+     * @param document 会话所在的文档
+     * @param session 会话
+     */
+    void remove(@NotNull Document document, @NotNull TypingPlayback session) {
+        sessions.remove(document, session);
+    }
+}
@@ -0,0 +1,199 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.util.text.StringUtil;
+
+import java.util.Arrays;
+
+/**
+ * 打字时间线
+ * 会话开始时一次性计算好每个输出单元的结束位置（编辑脚本中的按键位置）和目标时间，保存在两个基本类型数组中。
+ * 播放时只需顺序读取数组，每个单元的开销为O(1)；相同的种子会得到完全相同的时间线；
+ * 跳转到任意时间点或位置只需一次二分查找。
+ */
+public final class TypingTimeline {
+    // 第k个单元的结束位置（不包含），数组长度可能大于单元数
+    private final int[] unitEnds;
+    // 第k个单元的目标时间（相对会话开始的毫秒数），单调不减
+    private final int[] unitTimes;
+    private final int unitCount;
+
+    private TypingTimeline(int[] unitEnds, int[] unitTimes, int unitCount) {
+        this.unitEnds = unitEnds;
+        this.unitTimes = unitTimes;
+        this.unitCount = unitCount;
+    }
+
+    /**
+     * 计算时间线
+     * 单元的结束位置是编辑脚本中的按键位置：删除阶段每个单元退格删除一个字素簇（删除内容跨行时选中整块一次删除），
+     * 输入阶段按输出粒度划分，单元不会跨越差异块
+     * @param script 编辑脚本
+     * @param planner 目标内容的输出单元划分
+     * @param model 节奏模型，使用相同种子的随机数时得到相同时间线
+     * @param granularity 输出粒度，用于预估单元数
+     * @return 时间线
+     */
+    public static TypingTimeline build(EditScript script, EmissionPlanner planner, TimingModel model,
+                                       FakeTypingSettings.TypingGranularity granularity) {
+        CharSequence source = script.getSource();
+        CharSequence target = script.getTarget();
+        int length = script.getStreamLength();
+        Builder builder = new Builder(Math.max(16, granularity == FakeTypingSettings.TypingGranularity.CHAR ? length : length / 4));
+        // 原始内容的字素簇索引，只有需要逐个退格删除时才计算
+        GraphemeIndex sourceGraphemes = null;
+        for (int h = 0; h < script.getHunkCount(); h++) {
+            int base = script.streamStart(h);
+            int delete = script.deleteLength(h);
+            int sourceEnd = script.sourceStart(h) + delete;
+            if (delete > 0) {
+                if (StringUtil.indexOf(source, '\n', script.sourceStart(h), sourceEnd) >= 0) {
+                    // 跨行的内容选中后一次删除
+                    builder.add(base + delete, model.deleteDelay(source, script.sourceStart(h), sourceEnd, true));
+                } else {
+                    if (sourceGraphemes == null) {
+                        sourceGraphemes = new GraphemeIndex(source);
+                    }
+                    // 从后往前逐个字素簇退格
+                    int offset = sourceEnd;
+                    while (offset > script.sourceStart(h)) {
+                        int start = Math.max(script.sourceStart(h), sourceGraphemes.previousBoundary(offset));
+                        builder.add(base + sourceEnd - start, model.deleteDelay(source, start, offset, false));
+                        offset = start;
+                    }
+                }
+            }
+            int targetStart = script.targetStart(h);
+            int targetEnd = targetStart + script.insertLength(h);
+            int offset = targetStart;
+            while (offset < targetEnd) {
+                int end = Math.min(targetEnd, planner.nextUnitEnd(offset));
+                builder.add(base + delete + end - targetStart,
+                        model.unitDelay(target, offset, end, planner.unitWeight(offset, end)));
+                offset = end;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 逐个添加单元，数组按需扩容
+     */
+    static final class Builder {
+        private int[] ends;
+        private int[] times;
+        private int count = 0;
+        // 下一个单元的目标时间，第一个单元立即输入
+        private long time = 0;
+
+        Builder(int capacity) {
+            ends = new int[capacity];
+            times = new int[capacity];
+        }
+
+        /**
+         * 添加一个单元
+         * @param end 单元结束位置
+         * @param delay 单元输入之后到下一个单元的延迟
+         */
+        void add(int end, int delay) {
+            if (count == ends.length) {
+                int newCapacity = ends.length + (ends.length >> 1) + 1;
+                ends = Arrays.copyOf(ends, newCapacity);
+                times = Arrays.copyOf(times, newCapacity);
+            }
+            ends[count] = end;
+            times[count] = (int) Math.min(Integer.MAX_VALUE, time);
+            count++;
+            time += delay;
+        }
+
+        /**
+         * 生成时间线，数组多出的部分不超过单元数的1/8时直接使用，避免为几MB的文件再复制一份
+         */
+        TypingTimeline build() {
+            if (ends.length - count > count >> 3) {
+                ends = Arrays.copyOf(ends, count);
+                times = Arrays.copyOf(times, count);
+            }
+            return new TypingTimeline(ends, times, count);
+        }
+    }
+
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    /**
+     * 数组的长度，可能大于单元数
+     */
+    int capacity() {
+        return unitEnds.length;
+    }
+
+    /**
+     * 第k个单元的开始位置，即前k个单元完成后的按键位置
+     */
+    public int unitStart(int unit) {
+        return unit <= 0 ? 0 : unitEnds[Math.min(unit, unitCount) - 1];
+    }
+
+    /**
+     * 第k个单元的结束位置（不包含）
+     */
+    public int unitEnd(int unit) {
+        return unitEnds[unit];
+    }
+
+    /**
+     * 第k个单元的目标时间（毫秒）
+     */
+    public int unitTime(int unit) {
+        return unitTimes[unit];
+    }
+
+    /**
+     * 全部单元输入完成的目标时间（毫秒）
+     */
+    public int totalTimeMs() {
+        return unitCount == 0 ? 0 : unitTimes[unitCount - 1];
+    }
+
+    /**
+     * 到指定时间为止应当输入完成的单元数
+     * @param timeMs 相对会话开始的毫秒数
+     */
+    public int unitsDueAt(long timeMs) {
+        int low = 0;
+        int high = unitCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (unitTimes[mid] <= timeMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 到达指定按键位置所需的单元数（向上对齐到单元边界）
+     * @param offset 按键位置
+     */
+    public int unitsCovering(int offset) {
+        if (offset <= 0) {
+            return 0;
+        }
+        int low = 0;
+        int high = unitCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (unitEnds[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.min(unitCount, low + 1);
+    }
+}
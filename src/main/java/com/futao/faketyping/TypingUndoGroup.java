@@ -0,0 +1,94 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.command.undo.UndoUtil;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+
+/**
+ * 打字会话的撤销分组
+ * 根据设置把一次会话的所有写入合并为一条或若干条撤销命令，或者完全不写入撤销历史，
+ * 同时统计写入撤销历史的命令数和文本量，用于估算撤销历史的增长
+ */
+public class TypingUndoGroup {
+    // 撤销历史中显示的命令名称
+    private static final String COMMAND_NAME = "FakeTyping";
+
+    private final Project project;
+    private final Document document;
+    private final FakeTypingSettings.UndoMode mode;
+    private final int chunkSize;
+
+    // 当前撤销分组，分组相同的连续命令会被合并为一次撤销
+    private Object groupId = new Object();
+    // 当前分组中已写入的字符数
+    private long charsInGroup = 0;
+    // 写入撤销历史的命令数（合并之后）
+    private int undoCommandCount = 0;
+    // 写入撤销历史的字符数（插入和删除的文本都会被撤销历史保留）
+    private long undoChars = 0;
+
+    /**
+     * 构造函数
+     * @param project 当前项目
+     * @param document 当前文档
+     * @param config 会话配置
+     */
+    public TypingUndoGroup(Project project, Document document, TypingConfig config) {
+        this.project = project;
+        this.document = document;
+        this.mode = config.getUndoMode();
+        this.chunkSize = config.getUndoChunkSize();
+    }
+
+    /**
+     * 在写命令中执行一次文档修改
+     * @param changedChars 本次修改涉及的字符数
+     * @param action 文档修改
+     */
+    public void write(int changedChars, Runnable action) {
+        if (mode == FakeTypingSettings.UndoMode.NONE) {
+            // 不写入撤销历史
+            WriteCommandAction.runWriteCommandAction(project, () -> UndoUtil.disableUndoIn(document, action));
+            return;
+        }
+
+        Object commandGroupId;
+        if (mode == FakeTypingSettings.UndoMode.PER_FRAME) {
+            // 每帧单独一条撤销命令
+            commandGroupId = null;
+            undoCommandCount++;
+        } else {
+            // 按块合并时，当前块写满后开启新的分组
+            if (mode == FakeTypingSettings.UndoMode.CHUNK && charsInGroup >= chunkSize) {
+                groupId = new Object();
+                charsInGroup = 0;
+            }
+            if (charsInGroup == 0) {
+                undoCommandCount++;
+            }
+            commandGroupId = groupId;
+            charsInGroup += Math.max(1, changedChars);
+        }
+        undoChars += changedChars;
+
+        WriteCommandAction.writeCommandAction(project)
+                .withName(COMMAND_NAME)
+                .withGroupId(commandGroupId)
+                .run(action::run);
+    }
+
+    /**
+     * 生成撤销历史增长的报告
+     * 保留的文本量由写入的字符数估算，不包含撤销命令本身的对象开销
+     * @return 报告文本
+     */
+    public String report() {
+        if (mode == FakeTypingSettings.UndoMode.NONE) {
+            return "撤销历史：未记录";
+        }
+        // 撤销历史以UTF-16保存文本，每个字符2字节
+        return String.format("撤销历史：%d 条命令，估计保留约 %d KB 文本",
+                undoCommandCount, undoChars * 2 / 1024);
+    }
+}
@@ -0,0 +1,44 @@
+package com.futao.faketyping;
+
+import java.util.SplittableRandom;
+
+/**
+ * 均匀节奏模型
+ * 每个字符使用相同的基础延迟，启用随机速度变化时在基础延迟上下均匀浮动
+ */
+public class UniformTimingModel implements TimingModel {
+    private final TypingConfig config;
+    private final SplittableRandom random;
+
+    public UniformTimingModel(TypingConfig config, SplittableRandom random) {
+        this.config = config;
+        this.random = random;
+    }
+
+    @Override
+    public int unitDelay(CharSequence text, int start, int end, int weight) {
+        if (weight <= 0) {
+            return 0;
+        }
+        return nextDelay() * weight;
+    }
+
+    @Override
+    public int deleteDelay(CharSequence text, int start, int end, boolean selection) {
+        return nextDelay() * (selection ? SELECTION_DELETE_WEIGHT : 1);
+    }
+
+    /**
+     * 计算单字符延迟
+     * @return 延迟（毫秒）
+     */
+    private int nextDelay() {
+        int typingSpeed = config.getTypingSpeed();
+        if (!config.isRandomSpeedVariation()) {
+            return typingSpeed;
+        }
+        int variation = (int) (typingSpeed * config.getRandomVariationPercent() / 100.0);
+        int delay = typingSpeed + random.nextInt(variation * 2 + 1) - variation;
+        return Math.max(1, Math.min(config.getMaxTypingSpeed(), delay));
+    }
+}
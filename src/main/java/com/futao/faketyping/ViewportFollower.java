@@ -0,0 +1,87 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.FoldRegion;
+import com.intellij.openapi.editor.FoldingModel;
+import com.intellij.openapi.editor.ScrollType;
+import com.intellij.openapi.editor.ScrollingModel;
+
+import java.awt.*;
+
+/**
+ * 打字时的视图跟随
+ * 只有当光标离开可见区域内的安全区时才滚动视图，光标仍在安全区内时不做任何滚动，
+ * 避免每帧都触发布局和重绘。只能在EDT上使用。
+ */
+public class ViewportFollower {
+    private final Editor editor;
+    private final int safeZoneLines;
+    private final boolean smoothScroll;
+    // 上一次检查滚动时光标所在的行（平滑滚动模式下使用）
+    private int lastLine = -1;
+
+    /**
+     * 构造函数
+     * @param editor 当前编辑器
+     * @param config 会话配置
+     */
+    public ViewportFollower(Editor editor, TypingConfig config) {
+        this.editor = editor;
+        this.safeZoneLines = config.getScrollSafeZoneLines();
+        this.smoothScroll = config.isSmoothScroll();
+    }
+
+    /**
+     * 把光标移动到指定位置，必要时滚动视图
+     * @param offset 光标位置
+     */
+    public void follow(int offset) {
+        // 光标所在位置被折叠时先展开，否则输入的内容藏在折叠区域里看不到
+        FoldingModel foldingModel = editor.getFoldingModel();
+        FoldRegion collapsed = foldingModel.getCollapsedRegionAtOffset(offset);
+        if (collapsed != null) {
+            foldingModel.runBatchFoldingOperation(() -> collapsed.setExpanded(true));
+        }
+        editor.getCaretModel().moveToOffset(offset);
+
+        ScrollingModel scrollingModel = editor.getScrollingModel();
+        Rectangle visible = scrollingModel.getVisibleArea();
+        if (visible.height <= 0) {
+            // 编辑器还没有完成布局，退回到默认的滚动方式
+            scrollingModel.scrollToCaret(ScrollType.MAKE_VISIBLE);
+            return;
+        }
+
+        int line = editor.getDocument().getLineNumber(offset);
+        boolean lineChanged = line != lastLine;
+        lastLine = line;
+
+        Point caret = editor.offsetToXY(offset);
+        int lineHeight = editor.getLineHeight();
+        // 安全区不超过可见区域的三分之一，避免小窗口中来回滚动
+        int margin = Math.min(safeZoneLines * lineHeight, visible.height / 3);
+
+        // 垂直方向：平滑滚动模式下只在换行时检查，每次按整行移动
+        if (!smoothScroll || lineChanged) {
+            int top = visible.y + margin;
+            int bottom = visible.y + visible.height - margin;
+            if (caret.y < top || caret.y + lineHeight > bottom) {
+                if (smoothScroll && caret.y + lineHeight > bottom && caret.y + lineHeight - bottom <= lineHeight * 2) {
+                    // 光标刚离开安全区下边界，向下滚动整行
+                    int lines = (caret.y + lineHeight - bottom + lineHeight - 1) / lineHeight;
+                    scrollingModel.scrollVertically(visible.y + lines * lineHeight);
+                } else {
+                    // 跳跃较大（或向上离开安全区）时把光标放到视图中间，之后较长时间内无需再滚动
+                    scrollingModel.scrollToCaret(ScrollType.CENTER);
+                    return;
+                }
+            }
+        }
+
+        // 水平方向：光标超出可见宽度时（右侧预留约一个行高），把光标放到可见区域的左侧三分之一处
+        int right = visible.x + visible.width - lineHeight;
+        if (caret.x < visible.x || caret.x > right) {
+            scrollingModel.scrollHorizontally(Math.max(0, caret.x - visible.width / 3));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.futao.faketyping
+
+import com.intellij.notification.Notification
+import com.intellij.notification.NotificationAction
+import com.intellij.notification.NotificationType
+import com.intellij.notification.Notifications
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.startup.ProjectActivity
+import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.openapi.vfs.VirtualFile
+
+/**
+ * 项目打开后检查被中断的打字会话（IDE 关闭或崩溃时正在打字），提示用户继续打字或还原原始内容
+ * 在后台协程中执行，不阻塞项目打开，也不需要等待索引完成
+ */
+class SessionJournalStartup : ProjectActivity {
+
+    override suspend fun execute(project: Project) {
+        for (entry in SessionJournal.readAll(project.basePath)) {
+            val file = LocalFileSystem.getInstance().refreshAndFindFileByPath(entry.filePath)
+            if (file == null) {
+                // 文件已经不存在，日志没有意义
+                entry.discard()
+                continue
+            }
+            notifyInterrupted(project, file, entry)
+        }
+    }
+
+    private fun notifyInterrupted(project: Project, file: VirtualFile, entry: SessionJournal.Entry) {
+        val notification = Notification(
+            "FakeTyping",
+            "FakeTyping会话被中断",
+            "上次对 ${file.presentableUrl} 的打字在 ${entry.position} 个字符处被中断，" +
+                    "文件可能停留在输入了一半的状态。",
+            NotificationType.WARNING
+        )
+        notification.addAction(NotificationAction.createSimple("继续打字") {
+            notification.expire()
+            resume(project, file, entry)
+        })
+        notification.addAction(NotificationAction.createSimple("还原原始内容") {
+            notification.expire()
+            restore(project, file, entry)
+        })
+        notification.addAction(NotificationAction.createSimple("忽略") {
+            notification.expire()
+            entry.discard()
+        })
+        Notifications.Bus.notify(notification, project)
+    }
+
+    /**
+     * 打开文件并从最后一个检查点继续打字
+     */
+    private fun resume(project: Project, file: VirtualFile, entry: SessionJournal.Entry) {
+        val editor = FileEditorManager.getInstance(project).openTextEditor(OpenFileDescriptor(project, file), true)
+            ?: return
+        // 新会话会写入自己的日志
+        entry.discard()
+        val session = TypingSessionRegistry.getInstance().resumeSession(project, editor, entry)
+        TypingControlPanel.show(session)
+    }
+
+    /**
+     * 把文件恢复为被中断会话开始前的内容
+     */
+    private fun restore(project: Project, file: VirtualFile, entry: SessionJournal.Entry) {
+        val document = FileDocumentManager.getInstance().getDocument(file) ?: return
+        TypingSessionRegistry.getInstance().restoreSession(document)
+        WriteCommandAction.runWriteCommandAction(project, "FakeTyping还原", null,
+            { document.setText(entry.originalContent) })
+        entry.discard()
+        ApplicationManager.getApplication().invokeLater(
+            { FileEditorManager.getInstance(project).openFile(file, true) }, project.disposed)
+    }
+}
@@ -0,0 +1,145 @@
+package com.futao.faketyping;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 编辑脚本和按行比较的测试
+ * 对随机生成的文本对计算编辑脚本，逐段前进以及随机前后跳转后，文档内容都必须与对应状态一致。
+ * 使用无界面的 {@link DocumentImpl}，不需要启动 IDE
+ */
+public class EditScriptTest {
+    // 生成随机文本使用的片段：普通字符、换行、代理对、组合字符、emoji 连接序列、国旗和肤色修饰符
+    private static final String[] PIECES = {
+            "a", "b", "c", " ", "\n", "\n", "{", "}",
+            // é（单个字符）和 e + 组合重音符
+            "\u00E9", "e\u0301",
+            // 😀、👨‍👩‍👧（零宽连接符序列）
+            "\uD83D\uDE00", "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67",
+            // 🇺🇸、🇺🇦、单独的 🇺
+            "\uD83C\uDDFA\uD83C\uDDF8", "\uD83C\uDDFA\uD83C\uDDE6", "\uD83C\uDDFA",
+            // 👍🏽（肤色修饰符）、👍
+            "\uD83D\uDC4D\uD83C\uDFFD", "\uD83D\uDC4D"
+    };
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    public void forwardApplicationReachesTarget() {
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String source = randomText(random);
+            String target = random.nextInt(4) == 0 ? randomText(random) : mutate(random, source);
+            EditScript script = EditScript.compute(source, target);
+            Document document = new DocumentImpl(source, true);
+            int position = 0;
+            while (position < script.getStreamLength()) {
+                int next = Math.min(script.getStreamLength(), position + 1 + random.nextInt(8));
+                script.apply(document, position, next);
+                position = next;
+            }
+            assertEquals(describe(source, target), target, document.getText());
+        }
+    }
+
+    @Test
+    public void seekingMatchesForwardApplication() {
+        Random random = new Random(2);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String source = randomText(random);
+            String target = mutate(random, source);
+            EditScript script = EditScript.compute(source, target);
+            Document document = new DocumentImpl(source, true);
+            int position = 0;
+            for (int seek = 0; seek < 8; seek++) {
+                int next = random.nextInt(script.getStreamLength() + 1);
+                script.apply(document, position, next);
+                position = next;
+                // 同一个按键位置的状态与从头逐段前进得到的状态一致
+                Document expected = new DocumentImpl(source, true);
+                script.apply(expected, 0, position);
+                assertEquals(describe(source, target), expected.getText(), document.getText());
+            }
+            script.apply(document, position, script.getStreamLength());
+            assertEquals(describe(source, target), target, document.getText());
+            script.apply(document, script.getStreamLength(), 0);
+            assertEquals(describe(source, target), source, document.getText());
+        }
+    }
+
+    @Test
+    public void hunkEdgesDoNotSplitGraphemes() {
+        Random random = new Random(3);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String source = randomText(random);
+            String target = mutate(random, source);
+            GraphemeIndex sourceGraphemes = new GraphemeIndex(source);
+            GraphemeIndex targetGraphemes = new GraphemeIndex(target);
+            LineDiff.compare(source, target, (sourceStart, sourceEnd, targetStart, targetEnd) -> {
+                String message = describe(source, target);
+                assertTrue(message, sourceGraphemes.isBoundary(sourceStart) && sourceGraphemes.isBoundary(sourceEnd));
+                assertTrue(message, targetGraphemes.isBoundary(targetStart) && targetGraphemes.isBoundary(targetEnd));
+            });
+        }
+    }
+
+    @Test
+    public void changedFlagIsReplacedWhole() {
+        // 🇺🇸 改为 🇺🇦：两面国旗的第一个区域指示符相同，但不能只替换后半面旗
+        String source = "x \uD83C\uDDFA\uD83C\uDDF8\n";
+        String target = "x \uD83C\uDDFA\uD83C\uDDE6\n";
+        EditScript script = EditScript.compute(source, target);
+        assertEquals(1, script.getHunkCount());
+        assertEquals(2, script.sourceStart(0));
+        assertEquals(4, script.deleteLength(0));
+        assertEquals(4, script.insertLength(0));
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int pieces = random.nextInt(40);
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * 在原文本上做几处随机的插入、删除和替换，使两段文本有较多相同的行
+     */
+    private static String mutate(Random random, String text) {
+        StringBuilder result = new StringBuilder(text);
+        int edits = 1 + random.nextInt(4);
+        for (int i = 0; i < edits; i++) {
+            int start = random.nextInt(result.length() + 1);
+            int end = Math.min(result.length(), start + random.nextInt(6));
+            // 不在代理对中间修改，保证文本仍然是合法的 UTF-16
+            if (start > 0 && start < result.length() && Character.isLowSurrogate(result.charAt(start))) {
+                start--;
+            }
+            if (end > 0 && end < result.length() && Character.isLowSurrogate(result.charAt(end))) {
+                end++;
+            }
+            result.replace(start, end, random.nextBoolean() ? PIECES[random.nextInt(PIECES.length)] : "");
+        }
+        return result.toString();
+    }
+
+    private static String describe(String source, String target) {
+        return "source=" + escape(source) + " target=" + escape(target);
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            builder.append(c < 0x80 && c != '\n' ? String.valueOf(c) : String.format("\\u%04X", (int) c));
+        }
+        return builder.toString();
+    }
+}
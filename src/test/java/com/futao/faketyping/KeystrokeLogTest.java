@@ -0,0 +1,173 @@
+package com.futao.faketyping;
+
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * 按键录制文件格式的测试
+ * 用与录制相同的编码方法写入修改和光标记录，再流式读回，逐条比较
+ */
+public class KeystrokeLogTest {
+    // 插入内容使用的片段：普通字符、中文、代理对（emoji）和换行
+    private static final String[] PIECES = {
+            "a", "Z", " ", "\n", "\u4E2D\u6587",
+            // 😀、👨‍👩‍👧（代理对和零宽连接符序列）
+            "\uD83D\uDE00", "\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67"
+    };
+
+    /**
+     * 写入时的一条记录
+     */
+    private record Expected(boolean edit, long timeNanos, int offset, int oldLength, String text) {
+    }
+
+    @Test
+    public void recordsRoundTrip() throws IOException {
+        Random random = new Random(1);
+        String initial = "class A {\n    // \uD83D\uDE00\n}\n";
+        List<Expected> expected = new ArrayList<>();
+        // 覆盖变长整数的各个边界：0、1字节、多字节、int 最大值，以及一小时以上的时间差
+        long[] deltas = {0, 1, 127, 128, 16_383, 16_384, TimeUnit.HOURS.toNanos(2), Integer.MAX_VALUE + 1L};
+        int[] offsets = {0, 127, 128, 65_535, 1 << 24, Integer.MAX_VALUE};
+        long time = 0;
+        for (int i = 0; i < 5000; i++) {
+            long delta = i < deltas.length ? deltas[i] : random.nextInt(2_000_000_000);
+            time += delta;
+            int offset = i < offsets.length ? offsets[i] : random.nextInt(1_000_000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    expected.add(new Expected(true, time, offset, 0, randomText(random)));
+                    break;
+                case 1:
+                    // 删除，或者替换
+                    expected.add(new Expected(true, time, offset, 1 + random.nextInt(Integer.MAX_VALUE - 1),
+                            random.nextBoolean() ? "" : randomText(random)));
+                    break;
+                default:
+                    expected.add(new Expected(false, time, offset, 0, ""));
+            }
+        }
+
+        File file = File.createTempFile("keystrokes", "." + KeystrokeLog.EXTENSION);
+        try {
+            write(file, "/tmp/A.java", initial, expected);
+            KeystrokeLog.writeTotals(file, 12_345, time);
+            try (KeystrokeLog.Reader reader = new KeystrokeLog.Reader(file)) {
+                assertEquals("/tmp/A.java", reader.getFilePath());
+                assertEquals(initial, reader.getInitialContent());
+                assertEquals(12_345, reader.getTotalChars());
+                assertEquals(time, reader.getDurationNanos());
+                for (int i = 0; i < expected.size(); i++) {
+                    KeystrokeLog.Record record = reader.next();
+                    assertNotNull("record " + i, record);
+                    Expected e = expected.get(i);
+                    String message = "record " + i;
+                    assertEquals(message, e.edit(), record.isEdit());
+                    assertEquals(message, e.timeNanos(), record.getTimeNanos());
+                    assertEquals(message, e.offset(), record.getOffset());
+                    assertEquals(message, e.oldLength(), record.getOldLength());
+                    assertEquals(message, e.text(), record.getText());
+                }
+                assertNull(reader.next());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void truncatedRecordEndsStream() throws IOException {
+        List<Expected> expected = List.of(
+                new Expected(true, 10, 0, 0, "hello"),
+                new Expected(false, 20, 3, 0, ""),
+                new Expected(true, 30, 5, 0, "\uD83D\uDE00 world"));
+        File file = File.createTempFile("keystrokes", "." + KeystrokeLog.EXTENSION);
+        try {
+            write(file, "", "", expected);
+            // 模拟录制被中断：最后一条记录只写了一半，文件头中的总数仍为0
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(out.length() - 3);
+            }
+            try (KeystrokeLog.Reader reader = new KeystrokeLog.Reader(file)) {
+                assertEquals(0, reader.getTotalChars());
+                assertEquals(0, reader.getDurationNanos());
+                assertEquals("hello", reader.next().getText());
+                assertEquals(3, reader.next().getOffset());
+                assertNull(reader.next());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        File file = File.createTempFile("keystrokes", "." + KeystrokeLog.EXTENSION);
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write("not a recording".getBytes(StandardCharsets.UTF_8));
+            }
+            assertThrows(IOException.class, () -> new KeystrokeLog.Reader(file).close());
+            // 文件头写了一半
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(0);
+                out.writeInt(KeystrokeLog.MAGIC);
+                out.writeInt(0);
+            }
+            assertThrows(IOException.class, () -> new KeystrokeLog.Reader(file).close());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * 与录制相同：记录编码到缓冲区，缓冲区快满时追加到文件
+     */
+    private static void write(File file, String filePath, String initial, List<Expected> records) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            KeystrokeLog.writeHeader(out, filePath, initial);
+            byte[] buffer = new byte[4096];
+            int size = 0;
+            long previous = 0;
+            for (Expected record : records) {
+                byte[] text = record.text().isEmpty() ? null : record.text().getBytes(StandardCharsets.UTF_8);
+                int needed = KeystrokeLog.MAX_RECORD_OVERHEAD + (text == null ? 0 : text.length);
+                if (size + needed > buffer.length) {
+                    out.write(buffer, 0, size);
+                    size = 0;
+                }
+                long delta = record.timeNanos() - previous;
+                previous = record.timeNanos();
+                size = record.edit()
+                        ? KeystrokeLog.writeEdit(buffer, size, delta, record.offset(), record.oldLength(), text)
+                        : KeystrokeLog.writeCaret(buffer, size, delta, record.offset());
+            }
+            out.write(buffer, 0, size);
+        }
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int pieces = 1 + random.nextInt(random.nextInt(10) == 0 ? 200 : 4);
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package com.futao.faketyping;
+
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 崩溃保护日志格式的测试
+ * 在临时目录中用与会话相同的方法写入文件头和检查点，再按项目读回，
+ * 覆盖内容的三种存储方式、写了一半的检查点以及损坏日志的清理
+ */
+public class SessionJournalTest {
+    private static final String PROJECT = "/work/demo";
+
+    @Test
+    public void headerAndLastCheckpointRoundTrip() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        try {
+            String original = "class A {\n    // \uD83D\uDE00\n}\n";
+            String target = "class A {\n    int \u4E2D\u6587 = 1;\n}\n";
+            // 初始内容为空，目标内容单独存储
+            write(directory, "a", "/work/demo/A.java", PROJECT, original, "", target, 3, 17, 4096);
+            // 初始内容与原始内容相同，目标内容为空
+            write(directory, "b", "/work/demo/B.java", PROJECT, original, original, "");
+
+            List<SessionJournal.Entry> entries = sorted(SessionJournal.readAll(directory, PROJECT));
+            assertEquals(2, entries.size());
+            SessionJournal.Entry a = entries.get(0);
+            assertEquals("/work/demo/A.java", a.getFilePath());
+            assertEquals(42L, a.getSeed());
+            assertEquals(50, a.getTypingSpeed());
+            assertEquals(original, a.getOriginalContent());
+            assertEquals("", a.getInitialContent());
+            assertEquals(target, a.getTargetContent());
+            assertEquals(4096, a.getPosition());
+
+            SessionJournal.Entry b = entries.get(1);
+            assertEquals(original, b.getInitialContent());
+            assertEquals("", b.getTargetContent());
+            // 没有检查点时从头开始
+            assertEquals(0, b.getPosition());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void tornCheckpointIsIgnored() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        try {
+            // 最后一个检查点只写了一半：位置读不完整
+            File half = write(directory, "half", "/work/demo/A.java", PROJECT, "a", "", "ab", 5, 9);
+            try (RandomAccessFile out = new RandomAccessFile(half, "rw")) {
+                out.setLength(out.length() - 5);
+            }
+            // 最后一个检查点的反码不一致：位置写入了，反码还是旧数据
+            File mismatch = write(directory, "mismatch", "/work/demo/B.java", PROJECT, "a", "", "ab", 5, 9);
+            try (RandomAccessFile out = new RandomAccessFile(mismatch, "rw")) {
+                out.seek(out.length() - 4);
+                out.writeInt(0);
+            }
+
+            List<SessionJournal.Entry> entries = sorted(SessionJournal.readAll(directory, PROJECT));
+            assertEquals(2, entries.size());
+            assertEquals(5, entries.get(0).getPosition());
+            assertEquals(5, entries.get(1).getPosition());
+            // 检查点损坏不影响文件头，日志保留
+            assertTrue(half.exists());
+            assertTrue(mismatch.exists());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void readAllFiltersByProjectAndDiscardsCorruptJournals() throws IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        try {
+            write(directory, "mine", "/work/demo/A.java", PROJECT, "a", "", "ab", 1);
+            File other = write(directory, "other", "/work/other/A.java", "/work/other", "a", "", "ab", 1);
+            // 没有项目时记录为空路径
+            write(directory, "none", "/tmp/A.java", "", "a", "", "ab", 1);
+            // 不是日志扩展名的文件不读取
+            File unrelated = new File(directory, "notes.txt");
+            writeBytes(unrelated, "not a journal".getBytes(StandardCharsets.UTF_8));
+            // 文件头不完整和标记不对的日志被删除
+            File torn = write(directory, "torn", "/work/demo/C.java", PROJECT, "abc", "", "abcdef");
+            try (RandomAccessFile out = new RandomAccessFile(torn, "rw")) {
+                out.setLength(out.length() - 2);
+            }
+            File foreign = new File(directory, "foreign" + SessionJournal.EXTENSION);
+            writeBytes(foreign, "not a journal".getBytes(StandardCharsets.UTF_8));
+
+            List<SessionJournal.Entry> entries = SessionJournal.readAll(directory, PROJECT);
+            assertEquals(1, entries.size());
+            assertEquals("/work/demo/A.java", entries.get(0).getFilePath());
+            assertEquals(1, entries.get(0).getPosition());
+            assertFalse(torn.exists());
+            assertFalse(foreign.exists());
+            // 其他项目的日志留给其他项目
+            assertTrue(other.exists());
+            assertTrue(unrelated.exists());
+
+            List<SessionJournal.Entry> none = SessionJournal.readAll(directory, null);
+            assertEquals(1, none.size());
+            assertEquals("/tmp/A.java", none.get(0).getFilePath());
+            assertEquals(1, SessionJournal.readAll(directory, "/work/other").size());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void missingDirectoryHasNoEntries() {
+        assertTrue(SessionJournal.readAll(new File("/nonexistent/fakeTyping"), PROJECT).isEmpty());
+    }
+
+    /**
+     * 与会话相同：先写文件头，再逐个追加检查点
+     */
+    private static File write(File directory, String name, String filePath, String projectPath, String original,
+                              String initial, String target, int... checkpoints) throws IOException {
+        File file = new File(directory, name + SessionJournal.EXTENSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            SessionJournal.writeHeader(out, filePath, projectPath, 42L, 50, original, initial, target);
+            for (int checkpoint : checkpoints) {
+                ByteBuffer record = SessionJournal.checkpointRecord(checkpoint);
+                out.write(record.array(), record.position(), record.remaining());
+            }
+        }
+        return file;
+    }
+
+    private static void writeBytes(File file, byte[] bytes) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+    }
+
+    private static List<SessionJournal.Entry> sorted(List<SessionJournal.Entry> entries) {
+        return entries.stream().sorted(Comparator.comparing(SessionJournal.Entry::getFilePath)).toList();
+    }
+
+    private static void deleteRecursively(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
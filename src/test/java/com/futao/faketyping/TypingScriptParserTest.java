@@ -0,0 +1,186 @@
+package com.futao.faketyping;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 打字脚本解析器的测试
+ * 覆盖所有命令、多行输入（包括超过一块的流式读取）、转义以及出错时报告的脚本行号
+ */
+public class TypingScriptParserTest {
+
+    @Test
+    public void parsesEveryCommand() throws IOException {
+        List<ScriptCommand> commands = parse(String.join("\n",
+                "# 注释",
+                "",
+                "open src/Main.java",
+                "goto 12",
+                "goto 3:5",
+                "end",
+                "type  int a = 1;",
+                "delete 10 12",
+                "delete 10:5 10:9",
+                "pause 500",
+                "speed 30",
+                "save"));
+        assertEquals(10, commands.size());
+
+        assertCommand(commands.get(0), ScriptCommand.Kind.OPEN, 3);
+        assertEquals("src/Main.java", commands.get(0).getText());
+
+        assertCommand(commands.get(1), ScriptCommand.Kind.GOTO, 4);
+        assertEquals(12, commands.get(1).getLine());
+        assertEquals(0, commands.get(1).getColumn());
+        assertEquals(3, commands.get(2).getLine());
+        assertEquals(5, commands.get(2).getColumn());
+
+        assertCommand(commands.get(3), ScriptCommand.Kind.END, 6);
+
+        // 只去掉命令名之后的一个空格，保留其余的前导空格
+        assertCommand(commands.get(4), ScriptCommand.Kind.TYPE, 7);
+        assertEquals(" int a = 1;", commands.get(4).getText());
+
+        assertCommand(commands.get(5), ScriptCommand.Kind.DELETE, 8);
+        assertEquals(10, commands.get(5).getLine());
+        assertEquals(0, commands.get(5).getColumn());
+        assertEquals(12, commands.get(5).getEndLine());
+        assertEquals(0, commands.get(5).getEndColumn());
+        assertEquals(10, commands.get(6).getLine());
+        assertEquals(5, commands.get(6).getColumn());
+        assertEquals(10, commands.get(6).getEndLine());
+        assertEquals(9, commands.get(6).getEndColumn());
+
+        assertCommand(commands.get(7), ScriptCommand.Kind.PAUSE, 10);
+        assertEquals(500, commands.get(7).getValue());
+        assertCommand(commands.get(8), ScriptCommand.Kind.SPEED, 11);
+        assertEquals(30, commands.get(8).getValue());
+        assertCommand(commands.get(9), ScriptCommand.Kind.SAVE, 12);
+    }
+
+    @Test
+    public void heredocWithIdentifier() throws IOException {
+        List<ScriptCommand> commands = parse(String.join("\n",
+                "type <<END_1",
+                "    System.out.println(\"Hello\");",
+                "EOF",
+                "",
+                "END_1",
+                "save"));
+        assertEquals(2, commands.size());
+        assertCommand(commands.get(0), ScriptCommand.Kind.TYPE, 1);
+        // 其他标记和空行都是内容的一部分，内容不做转义处理
+        assertEquals("    System.out.println(\"Hello\");\nEOF\n\n", commands.get(0).getText());
+        assertCommand(commands.get(1), ScriptCommand.Kind.SAVE, 6);
+    }
+
+    @Test
+    public void doubleAngleWithoutIdentifierIsSingleLine() throws IOException {
+        List<ScriptCommand> commands = parse(String.join("\n",
+                "type << endl;",
+                "type <<",
+                "type <<1abc",
+                "type <<EOF x",
+                "save"));
+        assertEquals(5, commands.size());
+        assertEquals("<< endl;", commands.get(0).getText());
+        assertEquals("<<", commands.get(1).getText());
+        assertEquals("<<1abc", commands.get(2).getText());
+        assertEquals("<<EOF x", commands.get(3).getText());
+        assertCommand(commands.get(4), ScriptCommand.Kind.SAVE, 5);
+    }
+
+    @Test
+    public void unescapesSingleLineText() throws IOException {
+        List<ScriptCommand> commands = parse(String.join("\n",
+                "type a\\nb\\tc\\\\d",
+                "type \\<<EOF",
+                "type \\x\\",
+                "save"));
+        assertEquals("a\nb\tc\\d", commands.get(0).getText());
+        assertEquals("<<EOF", commands.get(1).getText());
+        // 未知的转义和结尾的反斜杠原样保留
+        assertEquals("\\x\\", commands.get(2).getText());
+        assertCommand(commands.get(3), ScriptCommand.Kind.SAVE, 4);
+    }
+
+    @Test
+    public void longHeredocIsStreamedInChunks() throws IOException {
+        String line = "0123456789abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrs";
+        int lines = 3 * TypingScriptParser.MAX_CHUNK_CHARS / line.length();
+        StringBuilder script = new StringBuilder("type <<EOF\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            script.append(line).append('\n');
+            expected.append(line).append('\n');
+        }
+        script.append("EOF\nsave\n");
+
+        List<ScriptCommand> commands = parse(script.toString());
+        StringBuilder typed = new StringBuilder();
+        int chunks = 0;
+        int previousLine = 0;
+        for (ScriptCommand command : commands) {
+            if (command.getKind() != ScriptCommand.Kind.TYPE) {
+                break;
+            }
+            chunks++;
+            // 每块都以完整的行结束，大小不超过一块的上限加一行
+            assertTrue(command.getText().endsWith("\n"));
+            assertTrue(command.getText().length() < TypingScriptParser.MAX_CHUNK_CHARS + line.length() + 1);
+            // 第一块报告 type 命令所在的行，之后每块报告的行号递增
+            assertTrue(chunks == 1 ? command.getScriptLine() == 1 : command.getScriptLine() > previousLine);
+            previousLine = command.getScriptLine();
+            typed.append(command.getText());
+        }
+        assertTrue("chunks=" + chunks, chunks >= 3);
+        assertEquals(expected.toString(), typed.toString());
+        assertCommand(commands.get(commands.size() - 1), ScriptCommand.Kind.SAVE, lines + 3);
+    }
+
+    @Test
+    public void errorsReportScriptLine() {
+        assertError("open", "第 1 行");
+        assertError("save\nfoo bar", "第 2 行");
+        assertError("\n\ngoto 0", "第 3 行");
+        assertError("goto 3:0", "第 1 行");
+        assertError("goto abc", "第 1 行");
+        assertError("delete 10", "第 1 行");
+        assertError("delete 10 10:3", "第 1 行");
+        assertError("delete 12 10", "第 1 行");
+        assertError("pause -5", "第 1 行");
+        // 多行输入没有结束标记时，报告读到的最后一行
+        assertError("save\ntype <<EOF\na\nb", "第 4 行");
+    }
+
+    private static void assertError(String script, String expectedLine) {
+        IOException error = assertThrows(IOException.class, () -> parse(script));
+        assertTrue(error.getMessage(), error.getMessage().contains(expectedLine));
+    }
+
+    private static void assertCommand(ScriptCommand command, ScriptCommand.Kind kind, int scriptLine) {
+        assertEquals(kind, command.getKind());
+        assertEquals(scriptLine, command.getScriptLine());
+    }
+
+    private static List<ScriptCommand> parse(String script) throws IOException {
+        List<ScriptCommand> commands = new ArrayList<>();
+        try (TypingScriptParser parser = new TypingScriptParser(new StringReader(script))) {
+            ScriptCommand command;
+            while ((command = parser.next()) != null) {
+                commands.add(command);
+            }
+            assertNull(parser.next());
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,216 @@
+package com.futao.faketyping;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 打字时间线的测试
+ * 对随机生成的文本对计算时间线，二分查找的结果在各个边界上都必须与顺序扫描一致；
+ * 同时检查数组的扩容、多余部分的裁剪以及相同种子得到相同的时间线
+ */
+public class TypingTimelineTest {
+    // 生成随机文本使用的片段：普通字符、空白、换行、中文和代理对
+    private static final String[] PIECES = {
+            "a", "bc", "int", " ", "    ", "\n", "\n", "{", "}", ";", "\u4E2D\u6587", "\uD83D\uDE00"
+    };
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void binarySearchesMatchLinearScan() {
+        Random random = new Random(1);
+        FakeTypingSettings.TypingGranularity[] granularities = FakeTypingSettings.TypingGranularity.values();
+        FakeTypingSettings.TimingModelType[] models = FakeTypingSettings.TimingModelType.values();
+        for (int i = 0; i < ITERATIONS; i++) {
+            String source = randomText(random);
+            String target = random.nextInt(4) == 0 ? randomText(random) : mutate(random, source);
+            FakeTypingSettings.TypingGranularity granularity = granularities[random.nextInt(granularities.length)];
+            TypingConfig config = config(models[random.nextInt(models.length)], granularity, random.nextLong());
+            EditScript script = EditScript.compute(source, target);
+            TypingTimeline timeline = build(script, target, config);
+            String message = "source=" + source + " target=" + target + " granularity=" + granularity;
+
+            int count = timeline.getUnitCount();
+            // 单元的结束位置递增，最后一个单元结束于按键流的末尾；目标时间从0开始单调不减
+            for (int k = 0; k < count; k++) {
+                assertTrue(message, timeline.unitEnd(k) > timeline.unitStart(k));
+                assertTrue(message, k == 0 ? timeline.unitTime(k) == 0 : timeline.unitTime(k) >= timeline.unitTime(k - 1));
+            }
+            assertEquals(message, count == 0 ? 0 : script.getStreamLength(), timeline.unitStart(count));
+            assertEquals(message, count == 0 ? 0 : timeline.unitTime(count - 1), timeline.totalTimeMs());
+
+            // 时间：0、之前、每个单元的目标时间及其前后、结束之后
+            assertDueAt(message, timeline, -1);
+            assertDueAt(message, timeline, 0);
+            for (int k = 0; k < count; k++) {
+                assertDueAt(message, timeline, timeline.unitTime(k) - 1L);
+                assertDueAt(message, timeline, timeline.unitTime(k));
+                assertDueAt(message, timeline, timeline.unitTime(k) + 1L);
+            }
+            assertDueAt(message, timeline, timeline.totalTimeMs() + 1L);
+            assertDueAt(message, timeline, Long.MAX_VALUE);
+            assertEquals(message, count, timeline.unitsDueAt(timeline.totalTimeMs()));
+
+            // 位置：0、之前、每个单元的结束位置及其前后、结束之后
+            assertCovering(message, timeline, -1);
+            assertCovering(message, timeline, 0);
+            for (int k = 0; k < count; k++) {
+                assertCovering(message, timeline, timeline.unitEnd(k) - 1);
+                assertCovering(message, timeline, timeline.unitEnd(k));
+                assertCovering(message, timeline, timeline.unitEnd(k) + 1);
+            }
+            assertCovering(message, timeline, script.getStreamLength() + 1);
+            assertCovering(message, timeline, Integer.MAX_VALUE);
+            assertEquals(message, 0, timeline.unitsCovering(0));
+            if (count > 0) {
+                // 正好是最后一个单元的结束位置时需要全部单元
+                assertEquals(message, count, timeline.unitsCovering(timeline.unitEnd(count - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedGivesIdenticalTimeline() {
+        Random random = new Random(2);
+        for (FakeTypingSettings.TimingModelType model : FakeTypingSettings.TimingModelType.values()) {
+            for (int i = 0; i < 50; i++) {
+                String source = randomText(random);
+                String target = mutate(random, source);
+                long seed = random.nextLong();
+                TypingConfig config = config(model, FakeTypingSettings.TypingGranularity.CHAR, seed);
+                EditScript script = EditScript.compute(source, target);
+                TypingTimeline first = build(script, target, config);
+                TypingTimeline second = build(script, target, config);
+                assertEquals(first.getUnitCount(), second.getUnitCount());
+                for (int k = 0; k < first.getUnitCount(); k++) {
+                    assertEquals(first.unitEnd(k), second.unitEnd(k));
+                    assertEquals(first.unitTime(k), second.unitTime(k));
+                }
+            }
+        }
+        // 随机变化开启时，不同种子的节奏不同
+        String target = "public class A {\n    int value = 1;\n}\n".repeat(20);
+        EditScript script = EditScript.compute("", target);
+        TypingTimeline a = build(script, target, config(FakeTypingSettings.TimingModelType.HUMAN,
+                FakeTypingSettings.TypingGranularity.CHAR, 1));
+        TypingTimeline b = build(script, target, config(FakeTypingSettings.TimingModelType.HUMAN,
+                FakeTypingSettings.TypingGranularity.CHAR, 2));
+        assertNotEquals(a.totalTimeMs(), b.totalTimeMs());
+    }
+
+    @Test
+    public void builderGrowsAndTrimsSlack() {
+        // 从容量1开始逐步扩容，内容保持不变；多余部分超过单元数的1/8，生成时裁剪
+        TypingTimeline grown = fill(new TypingTimeline.Builder(1), 100, 7);
+        assertEquals(100, grown.getUnitCount());
+        assertEquals(100, grown.capacity());
+        for (int k = 0; k < 100; k++) {
+            assertEquals(k + 1, grown.unitEnd(k));
+            assertEquals(7 * k, grown.unitTime(k));
+        }
+
+        // 多余部分不超过1/8时直接使用原数组
+        assertEquals(100, fill(new TypingTimeline.Builder(100), 95, 1).capacity());
+        assertEquals(100, fill(new TypingTimeline.Builder(100), 89, 1).capacity());
+        assertEquals(88, fill(new TypingTimeline.Builder(100), 88, 1).capacity());
+        // 正好装满时不复制
+        assertEquals(64, fill(new TypingTimeline.Builder(64), 64, 1).capacity());
+
+        TypingTimeline empty = new TypingTimeline.Builder(16).build();
+        assertEquals(0, empty.getUnitCount());
+        assertEquals(0, empty.capacity());
+        assertEquals(0, empty.totalTimeMs());
+        assertEquals(0, empty.unitsDueAt(Long.MAX_VALUE));
+        assertEquals(0, empty.unitsCovering(10));
+    }
+
+    @Test
+    public void unitTimeSaturates() {
+        // 超过 int 范围的目标时间限制为 Integer.MAX_VALUE，仍然单调不减
+        TypingTimeline timeline = fill(new TypingTimeline.Builder(4), 4, Integer.MAX_VALUE);
+        assertEquals(0, timeline.unitTime(0));
+        assertEquals(Integer.MAX_VALUE, timeline.unitTime(1));
+        assertEquals(Integer.MAX_VALUE, timeline.unitTime(3));
+        assertEquals(1, timeline.unitsDueAt(Integer.MAX_VALUE - 1L));
+        assertEquals(4, timeline.unitsDueAt(Integer.MAX_VALUE));
+    }
+
+    private static TypingTimeline fill(TypingTimeline.Builder builder, int units, int delay) {
+        for (int k = 0; k < units; k++) {
+            builder.add(k + 1, delay);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 顺序扫描：目标时间不晚于指定时间的单元数
+     */
+    private static void assertDueAt(String message, TypingTimeline timeline, long timeMs) {
+        int expected = 0;
+        while (expected < timeline.getUnitCount() && timeline.unitTime(expected) <= timeMs) {
+            expected++;
+        }
+        assertEquals(message + " time=" + timeMs, expected, timeline.unitsDueAt(timeMs));
+    }
+
+    /**
+     * 顺序扫描：前n个单元完成后按键位置不小于指定位置的最小n，无法到达时为单元数
+     */
+    private static void assertCovering(String message, TypingTimeline timeline, int offset) {
+        int expected = 0;
+        while (expected < timeline.getUnitCount() && timeline.unitStart(expected) < offset) {
+            expected++;
+        }
+        assertEquals(message + " offset=" + offset, expected, timeline.unitsCovering(offset));
+    }
+
+    private static TypingTimeline build(EditScript script, String target, TypingConfig config) {
+        return TypingTimeline.build(script, new EmissionPlanner(target, config.getGranularity()),
+                TimingModel.create(config, new SplittableRandom(config.getSeed())), config.getGranularity());
+    }
+
+    private static TypingConfig config(FakeTypingSettings.TimingModelType timingModel,
+                                       FakeTypingSettings.TypingGranularity granularity, long seed) {
+        FakeTypingSettings settings = new FakeTypingSettings();
+        settings.timingModel = timingModel;
+        settings.typingGranularity = granularity;
+        settings.randomSpeedVariation = true;
+        settings.fixedSeed = true;
+        settings.seed = seed;
+        return TypingConfig.fromSettings(settings, settings.typingSpeed);
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int pieces = random.nextInt(60);
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * 在原文本上做几处随机的插入和删除，不在代理对中间修改
+     */
+    private static String mutate(Random random, String text) {
+        StringBuilder result = new StringBuilder(text);
+        int edits = 1 + random.nextInt(4);
+        for (int i = 0; i < edits; i++) {
+            int start = random.nextInt(result.length() + 1);
+            int end = Math.min(result.length(), start + random.nextInt(6));
+            if (start > 0 && start < result.length() && Character.isLowSurrogate(result.charAt(start))) {
+                start--;
+            }
+            if (end > 0 && end < result.length() && Character.isLowSurrogate(result.charAt(end))) {
+                end++;
+            }
+            result.replace(start, end, random.nextBoolean() ? PIECES[random.nextInt(PIECES.length)] : "");
+        }
+        return result.toString();
+    }
+}